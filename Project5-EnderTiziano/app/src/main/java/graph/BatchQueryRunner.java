@@ -0,0 +1,257 @@
+package graph;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/** Answers a stream of shortest path queries against one loaded graph.
+ * Each line of input is a query of the form
+ *   ORIG [DEST]
+ * and blank lines and lines starting with # are skipped. Queries go through
+ * a three-stage pipeline: the calling thread parses lines and hands them to a
+ * pool of workers, and a writer thread prints the answers in input order.
+ * The handoff queue is bounded, so the reader waits whenever the writer falls
+ * behind instead of buffering the whole input.
+ *
+ * Answers are CSV lines
+ *   ORIG,DEST,LENGTH,PATH
+ * where PATH lists the nodes separated by spaces and LENGTH is Infinity if
+ * there is no path; a query without DEST gives one line per reachable node,
+ * with an empty PATH. Alternatively answers are JSON lines, one per query.
+ * Queries naming an unknown node give an error line instead.
+ * Sample usage:
+ *   BatchQueryRunner runner = new BatchQueryRunner(new CompiledGraph(g), 4, false);
+ *   runner.run(new BufferedReader(new FileReader("queries.txt")), out);
+ *   */
+public class BatchQueryRunner {
+
+    private final CompiledGraph graph;
+    private final int numThreads;
+    private final boolean json;
+
+    // each worker reuses its own ShortestPaths, and with it the search
+    // arrays that compute keeps between calls
+    private final ThreadLocal<ShortestPaths> searches;
+
+    /** Constructor: create a runner answering queries on g with numThreads
+     * worker threads, writing JSON lines if json is true and CSV otherwise.
+     * Precondition: numThreads >= 1. */
+    public BatchQueryRunner(CompiledGraph g, int numThreads, boolean json) {
+        this.graph = g;
+        this.numThreads = numThreads;
+        this.json = json;
+        searches = ThreadLocal.withInitial(() -> new ShortestPaths(graph));
+    }
+
+    /** Answer every query read from in, writing the answers to out in the
+     * order the queries were read, and return the number of queries. */
+    public long run(BufferedReader in, Writer out) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(4 * numThreads);
+        Future<String> end = CompletableFuture.completedFuture(null);
+
+        // the writer stage: print answers as they complete, in order
+        IOException[] writeError = new IOException[1];
+        Thread writer = new Thread(() -> {
+            try {
+                for (Future<String> answer = pending.take(); answer != end; answer = pending.take()) {
+                    out.write(answer.get());
+                }
+                out.flush();
+            } catch (IOException e) {
+                writeError[0] = e;
+            } catch (InterruptedException | ExecutionException e) {
+                writeError[0] = new IOException(e);
+            }
+        }, "batch-writer");
+        writer.start();
+
+        long numQueries = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null && writer.isAlive()) {
+                String[] query = line.trim().split("\\s+");
+                if (query[0].isEmpty() || query[0].startsWith("#")) {
+                    continue;
+                }
+                if (!handOff(pending, workers.submit(() -> answer(query)), writer)) {
+                    break;
+                }
+                numQueries++;
+            }
+            handOff(pending, end, writer);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+        if (writeError[0] != null) {
+            throw writeError[0];
+        }
+        return numQueries;
+    }
+
+    /* Put answer on pending, waiting while it is full, and return true; or
+     * return false if the writer stops before there is room. */
+    private static boolean handOff(BlockingQueue<Future<String>> pending,
+            Future<String> answer, Thread writer) throws InterruptedException {
+        while (!pending.offer(answer, 100, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Return the answer lines for one query. */
+    private String answer(String[] query) {
+        String origCode = query[0];
+        String destCode = query.length > 1 ? query[1] : null;
+        int orig = graph.indexOf(origCode);
+        int dest = destCode == null ? 0 : graph.indexOf(destCode);
+        if (orig < 0 || dest < 0) {
+            String unknown = orig < 0 ? origCode : destCode;
+            if (json) {
+                return "{\"origin\":" + quote(origCode) + ",\"dest\":" + quote(destCode)
+                        + ",\"error\":" + quote("unknown node " + unknown) + "}\n";
+            }
+            return origCode + "," + (destCode == null ? "" : destCode)
+                    + ",error,unknown node " + unknown + "\n";
+        }
+
+        ShortestPaths sp = searches.get();
+        sp.compute(graph.getNode(orig));
+        ShortestPathTree tree = sp.getTree();
+        StringBuilder result = new StringBuilder();
+        if (destCode != null) {
+            int[] path = tree.pathIndices(dest);
+            if (json) {
+                result.append("{\"origin\":").append(quote(origCode))
+                      .append(",\"dest\":").append(quote(destCode))
+                      .append(",\"length\":").append(path == null ? "null" : tree.distance(dest))
+                      .append(",\"path\":");
+                if (path == null) {
+                    result.append("null");
+                } else {
+                    result.append('[');
+                    for (int i = 0; i < path.length; i++) {
+                        result.append(i > 0 ? "," : "").append(quote(graph.getNode(path[i]).getId()));
+                    }
+                    result.append(']');
+                }
+                result.append("}\n");
+            } else {
+                result.append(origCode).append(',').append(destCode).append(',')
+                      .append(tree.distance(dest)).append(',');
+                for (int i = 0; path != null && i < path.length; i++) {
+                    result.append(i > 0 ? " " : "").append(graph.getNode(path[i]).getId());
+                }
+                result.append('\n');
+            }
+        } else if (json) {
+            result.append("{\"origin\":").append(quote(origCode)).append(",\"lengths\":{");
+            boolean first = true;
+            for (int v = 0; v < graph.numNodes(); v++) {
+                if (tree.distance(v) != Double.POSITIVE_INFINITY) {
+                    result.append(first ? "" : ",").append(quote(graph.getNode(v).getId()))
+                          .append(':').append(tree.distance(v));
+                    first = false;
+                }
+            }
+            result.append("}}\n");
+        } else {
+            for (int v = 0; v < graph.numNodes(); v++) {
+                if (tree.distance(v) != Double.POSITIVE_INFINITY) {
+                    result.append(origCode).append(',').append(graph.getNode(v).getId())
+                          .append(',').append(tree.distance(v)).append(",\n");
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /* Return s as a JSON string literal, or null if s is null. Also used by
+     * RoutingServer. */
+    static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /* Return s as a positive int, or -1 if it is not one. */
+    private static int parsePositive(String s) {
+        try {
+            int n = Integer.parseInt(s);
+            return n > 0 ? n : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Run batch mode for ShortestPaths.main on an already parsed graph.
+     * options are
+     *   [QUERYFILE] [--json] [--threads N]
+     * where QUERYFILE defaults to standard input (also selected by -). The
+     * answers go to standard output and the throughput to standard error. */
+    static void runBatch(Graph g, String[] options) {
+        String queryFile = "-";
+        boolean json = false;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < options.length; i++) {
+            if (options[i].equals("--json")) {
+                json = true;
+            } else if (options[i].equals("--threads")) {
+                numThreads = i + 1 < options.length ? parsePositive(options[++i]) : -1;
+                if (numThreads < 1) {
+                    System.err.println("--threads needs a positive whole number");
+                    System.err.println("Usage: ShortestPaths FILETYPE FILENAME --batch"
+                            + " [QUERYFILE] [--json] [--threads N]");
+                    return;
+                }
+            } else {
+                queryFile = options[i];
+            }
+        }
+
+        BatchQueryRunner runner = new BatchQueryRunner(new CompiledGraph(g), numThreads, json);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try (BufferedReader in = queryFile.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : new BufferedReader(new FileReader(queryFile))) {
+            long start = System.nanoTime();
+            long numQueries = runner.run(in, out);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d queries in %.3f s (%.1f queries/second)%n",
+                    numQueries, seconds, numQueries / seconds);
+        } catch (FileNotFoundException e) {
+            System.err.println("Could not open file " + queryFile);
+        } catch (IOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package graph;
+import java.util.HashMap;
+import java.util.Map;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/** A compact, index-based snapshot of a Graph in compressed sparse row (CSR)
+ * form. Nodes are numbered 0 .. numNodes()-1 and the outgoing edges of node u
+ * are the edge indices edgeStart(u) .. edgeEnd(u)-1, whose heads and weights
+ * are stored in primitive arrays. The set of nodes and edges is fixed once
+ * compiled; edge weights may be changed in place with setWeight.
+ * Sample usage:
+ *   Graph g = // create your graph
+ *   CompiledGraph cg = new CompiledGraph(g);
+ *   int a = cg.indexOf(g.getNode("A"));
+ *   for (int e = cg.edgeStart(a); e < cg.edgeEnd(a); e++) {
+ *       int b = cg.head(e);
+ *       double w = cg.weight(e);
+ *   }
+ *   */
+public class CompiledGraph {
+
+    // first int of the serialized form, to recognize compiled graph files
+    private static final int MAGIC = 0x43534731;
+
+    private final Node[] nodes; // maps node indices to nodes
+    private final HashMap<Node,Integer> index; // maps nodes to node indices
+
+    // the edges leaving node u are firstEdge[u] .. firstEdge[u+1]-1
+    private final int[] firstEdge;
+    private final int[] head; // head[e] is the node index edge e points to
+    private final double[] weight; // weight[e] is the weight of edge e
+
+    /** Constructor: compile g. Nodes are numbered in the iteration order of
+     * g.getNodes(), and each node's edges in the iteration order of its
+     * neighbor map. */
+    public CompiledGraph(Graph g) {
+        Map<String,Node> graphNodes = g.getNodes();
+        int n = graphNodes.size();
+        nodes = new Node[n];
+        index = new HashMap<Node,Integer>();
+        int m = 0;
+        for (Node v : graphNodes.values()) {
+            index.put(v, index.size());
+            nodes[index.size() - 1] = v;
+            m += v.getNeighbors().size();
+        }
+
+        firstEdge = new int[n + 1];
+        head = new int[m];
+        weight = new double[m];
+        int e = 0;
+        for (int u = 0; u < n; u++) {
+            firstEdge[u] = e;
+            for (Map.Entry<Node,Double> edge : nodes[u].getNeighbors().entrySet()) {
+                head[e] = index.get(edge.getKey());
+                weight[e] = edge.getValue();
+                e++;
+            }
+        }
+        firstEdge[n] = e;
+    }
+
+    /** Constructor: wrap already-built CSR arrays. The arrays are used
+     * directly, not copied. */
+    CompiledGraph(Node[] nodes, int[] firstEdge, int[] head, double[] weight) {
+        this.nodes = nodes;
+        this.firstEdge = firstEdge;
+        this.head = head;
+        this.weight = weight;
+        index = new HashMap<Node,Integer>();
+        for (int i = 0; i < nodes.length; i++) {
+            index.put(nodes[i], i);
+        }
+    }
+
+    /** Return the number of nodes. */
+    public int numNodes() {
+        return nodes.length;
+    }
+
+    /** Return the number of edges. */
+    public int numEdges() {
+        return head.length;
+    }
+
+    /** Return the node with index i. */
+    public Node getNode(int i) {
+        return nodes[i];
+    }
+
+    /** Return the index of node v, or -1 if v is not in this graph. */
+    public int indexOf(Node v) {
+        Integer i = index.get(v);
+        return i == null ? -1 : i;
+    }
+
+    /** Return the index of the node with id s, or -1 if there is none. */
+    public int indexOf(String s) {
+        return indexOf(new Node(s));
+    }
+
+    /* Return the array mapping node indices to nodes, without copying. */
+    Node[] nodeArray() {
+        return nodes;
+    }
+
+    /* Return the map from nodes to node indices, without copying. */
+    Map<Node,Integer> nodeIndex() {
+        return index;
+    }
+
+    /** Return the index of the first edge leaving node u. */
+    public int edgeStart(int u) {
+        return firstEdge[u];
+    }
+
+    /** Return one past the index of the last edge leaving node u. */
+    public int edgeEnd(int u) {
+        return firstEdge[u + 1];
+    }
+
+    /** Return the number of edges leaving node u. */
+    public int outDegree(int u) {
+        return firstEdge[u + 1] - firstEdge[u];
+    }
+
+    /** Return the index of the node that edge e points to. */
+    public int head(int e) {
+        return head[e];
+    }
+
+    /** Return the weight of edge e. */
+    public double weight(int e) {
+        return weight[e];
+    }
+
+    /** Set the weight of edge e. This does not change the Graph this was
+     * compiled from. */
+    public void setWeight(int e, double w) {
+        weight[e] = w;
+    }
+
+    /** Return the index of the edge from u to v, or -1 if there is none. */
+    public int findEdge(int u, int v) {
+        for (int e = firstEdge[u]; e < firstEdge[u + 1]; e++) {
+            if (head[e] == v) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /** Return a new CompiledGraph with the same node indices and every edge
+     * reversed. Edge indices of the result are unrelated to those of this
+     * graph, and later weight changes are not shared. */
+    public CompiledGraph reverse() {
+        int n = nodes.length;
+        int[] revFirst = new int[n + 1];
+        for (int e = 0; e < head.length; e++) {
+            revFirst[head[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            revFirst[v + 1] += revFirst[v];
+        }
+        int[] next = revFirst.clone();
+        int[] revHead = new int[head.length];
+        double[] revWeight = new double[head.length];
+        for (int u = 0; u < n; u++) {
+            for (int e = firstEdge[u]; e < firstEdge[u + 1]; e++) {
+                int slot = next[head[e]]++;
+                revHead[slot] = u;
+                revWeight[slot] = weight[e];
+            }
+        }
+        return new CompiledGraph(nodes, revFirst, revHead, revWeight);
+    }
+
+    /** Return a new CompiledGraph containing the same nodes and edges, in
+     * which node i is the node with index order[i] in this graph. Each node's
+     * edges are sorted by the new index of their head, so that scanning them
+     * touches memory in increasing order. Nodes keep their ids, so indexOf
+     * and getNode translate transparently. See VertexOrdering for ways to
+     * compute order. Precondition: order is a permutation of 0 .. numNodes()-1. */
+    public CompiledGraph reorder(int[] order) {
+        int n = nodes.length;
+        int[] rank = new int[n]; // rank[old index] = new index
+        for (int i = 0; i < n; i++) {
+            rank[order[i]] = i;
+        }
+        Node[] newNodes = new Node[n];
+        int[] newFirst = new int[n + 1];
+        int[] newHead = new int[head.length];
+        double[] newWeight = new double[head.length];
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            int u = order[i];
+            newNodes[i] = nodes[u];
+            newFirst[i] = e;
+            for (int f = firstEdge[u]; f < firstEdge[u + 1]; f++) {
+                // insertion sort by head: degrees are small
+                int h = rank[head[f]];
+                double w = weight[f];
+                int j = e++;
+                while (j > newFirst[i] && newHead[j - 1] > h) {
+                    newHead[j] = newHead[j - 1];
+                    newWeight[j] = newWeight[j - 1];
+                    j--;
+                }
+                newHead[j] = h;
+                newWeight[j] = w;
+            }
+        }
+        newFirst[n] = e;
+        return new CompiledGraph(newNodes, newFirst, newHead, newWeight);
+    }
+
+    /** Write this graph to out. Node ids are written in index order, so a
+     * graph read back with read() has exactly the same node indices, edge
+     * indices and weights, including any reordering applied before. */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(nodes.length);
+        out.writeInt(head.length);
+        for (Node v : nodes) {
+            out.writeUTF(v.getId());
+        }
+        for (int i = 0; i <= nodes.length; i++) {
+            out.writeInt(firstEdge[i]);
+        }
+        for (int e = 0; e < head.length; e++) {
+            out.writeInt(head[e]);
+            out.writeDouble(weight[e]);
+        }
+        out.flush();
+    }
+
+    /** Read a graph written by write(). The nodes of the result are new Node
+     * objects with the original ids and no neighbors of their own; all edges
+     * are held by the CompiledGraph. */
+    public static CompiledGraph read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a compiled graph");
+        }
+        int n = in.readInt();
+        int m = in.readInt();
+        Node[] nodes = new Node[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = new Node(in.readUTF());
+        }
+        int[] firstEdge = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            firstEdge[i] = in.readInt();
+        }
+        int[] head = new int[m];
+        double[] weight = new double[m];
+        for (int e = 0; e < m; e++) {
+            head[e] = in.readInt();
+            weight[e] = in.readDouble();
+        }
+        return new CompiledGraph(nodes, firstEdge, head, weight);
+    }
+}
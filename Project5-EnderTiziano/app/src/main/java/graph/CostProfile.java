@@ -0,0 +1,74 @@
+package graph;
+import java.util.HashMap;
+import java.util.Map;
+
+/** A weighted-sum cost over EdgeAttributes. The cost of an edge is
+ *   lengthWeight * length + slopeWeight * |slope|
+ *     + accessibilityWeight * accessibility + surface penalty
+ * where the surface penalty is set per surface type and defaults to 0.
+ * Profiles are chosen per query (see MultiCriteriaRouter), so switching
+ * between them does not require parsing or compiling the graph again.
+ * Sample usage:
+ *   CostProfile wheelchair = new CostProfile(1.0, 50.0, 0.0);
+ *   wheelchair.setSurfacePenalty("gravel", 100.0);
+ *   */
+public class CostProfile {
+
+    private final double lengthWeight;
+    private final double slopeWeight;
+    private final double accessibilityWeight;
+    private final HashMap<String,Double> surfacePenalty; // maps surface names to penalties
+
+    /** Constructor: create a profile with the given weights and no surface
+     * penalties. Precondition: all weights are nonnegative. */
+    public CostProfile(double lengthWeight, double slopeWeight, double accessibilityWeight) {
+        if (lengthWeight < 0 || slopeWeight < 0 || accessibilityWeight < 0) {
+            throw new IllegalArgumentException("Cost weights must be nonnegative");
+        }
+        this.lengthWeight = lengthWeight;
+        this.slopeWeight = slopeWeight;
+        this.accessibilityWeight = accessibilityWeight;
+        surfacePenalty = new HashMap<String,Double>();
+    }
+
+    /** Return a profile whose cost is the length of each edge. */
+    public static CostProfile length() {
+        return new CostProfile(1.0, 0.0, 0.0);
+    }
+
+    /** Return a profile whose cost is the accessibility score of each edge,
+     * which by default is the weight of the parsed Graph. */
+    public static CostProfile accessibility() {
+        return new CostProfile(0.0, 0.0, 1.0);
+    }
+
+    /** Add penalty to the cost of every edge with the given surface type.
+     * Precondition: penalty is nonnegative. */
+    public void setSurfacePenalty(String surface, double penalty) {
+        if (penalty < 0) {
+            throw new IllegalArgumentException("Surface penalty must be nonnegative");
+        }
+        surfacePenalty.put(surface.toLowerCase(), penalty);
+    }
+
+    /** Return the penalty of each surface code of attrs, indexed by code. */
+    double[] surfacePenalties(EdgeAttributes attrs) {
+        double[] penalties = new double[attrs.numSurfaces()];
+        for (Map.Entry<String,Double> entry : surfacePenalty.entrySet()) {
+            int code = attrs.surfaceCode(entry.getKey());
+            if (code >= 0) {
+                penalties[code] = entry.getValue();
+            }
+        }
+        return penalties;
+    }
+
+    /** Return the cost of edge e of attrs, given the penalties returned by
+     * surfacePenalties(attrs). */
+    double cost(EdgeAttributes attrs, double[] penalties, int e) {
+        return lengthWeight * attrs.length(e)
+                + slopeWeight * Math.abs(attrs.slope(e))
+                + accessibilityWeight * attrs.accessibility(e)
+                + penalties[attrs.surface(e)];
+    }
+}
@@ -1,9 +1,17 @@
 package graph;
 import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.io.File;
 import java.io.FileNotFoundException;
 
+/** Parser for sidewalk CSV files. The first line holds the column names; the
+ * "origin", "dest" and "distance" columns are required, and "distance" is the
+ * edge weight of the parsed Graph. The optional "length", "slope" and
+ * "surface" columns, and an "accessibility" column (which defaults to
+ * "distance"), are kept as per-edge attributes; see getEdgeAttributes. Missing
+ * or non-numeric attributes are 0 and a missing surface is "unknown". */
 public class DBParser extends GraphParser {
 
     private Scanner sc; // a scanner reading the CSV file
@@ -13,6 +21,17 @@ public class DBParser extends GraphParser {
 
     private Graph graph;
 
+    // attribute columns of the rows parsed so far, indexed by row
+    private int numRows;
+    private Node[] rowOrig;
+    private Node[] rowDest;
+    private double[] rowLength;
+    private double[] rowSlope;
+    private double[] rowAccessibility;
+    private int[] rowSurface;
+    private ArrayList<String> surfaceNames; // maps surface codes to names
+    private HashMap<String,Integer> surfaceCodes; // maps names to codes
+
     /** Constructor: create parser. */
     public DBParser() {
         graph = new Graph();
@@ -30,6 +49,15 @@ public class DBParser extends GraphParser {
     @Override
     public Graph parse() {
         graph = new Graph();
+        numRows = 0;
+        rowOrig = new Node[16];
+        rowDest = new Node[16];
+        rowLength = new double[16];
+        rowSlope = new double[16];
+        rowAccessibility = new double[16];
+        rowSurface = new int[16];
+        surfaceNames = new ArrayList<String>();
+        surfaceCodes = new HashMap<String,Integer>();
         while (sc.hasNextLine()) {
             parseCSVData(sc.nextLine().split(","));
         }
@@ -51,6 +79,86 @@ public class DBParser extends GraphParser {
 
         double AccessibilityScore = Double.parseDouble(fields[fieldKey.get("distance")]);
         graph.addEdge(SidewalkOrig, SidewalkDest, AccessibilityScore);
+
+        // keep the remaining attributes of this row
+        if (numRows == rowLength.length) {
+            rowOrig = Arrays.copyOf(rowOrig, 2 * numRows);
+            rowDest = Arrays.copyOf(rowDest, 2 * numRows);
+            rowLength = Arrays.copyOf(rowLength, 2 * numRows);
+            rowSlope = Arrays.copyOf(rowSlope, 2 * numRows);
+            rowAccessibility = Arrays.copyOf(rowAccessibility, 2 * numRows);
+            rowSurface = Arrays.copyOf(rowSurface, 2 * numRows);
+        }
+        rowOrig[numRows] = SidewalkOrig;
+        rowDest[numRows] = SidewalkDest;
+        rowLength[numRows] = parseField(fields, "length", 0.0);
+        rowSlope[numRows] = parseField(fields, "slope", 0.0);
+        rowAccessibility[numRows] = parseField(fields, "accessibility", AccessibilityScore);
+        String surface = "unknown";
+        Integer surfaceColumn = fieldKey.get("surface");
+        if (surfaceColumn != null && surfaceColumn < fields.length) {
+            surface = fields[surfaceColumn].replace("\"","").trim().toLowerCase();
+        }
+        if (!surfaceCodes.containsKey(surface)) {
+            surfaceCodes.put(surface, surfaceNames.size());
+            surfaceNames.add(surface);
+        }
+        rowSurface[numRows] = surfaceCodes.get(surface);
+        numRows++;
+    }
+
+    /* Return the value of the named numeric column in fields, or
+     * defaultValue if the file has no such column or the field is empty or
+     * not a number. Attributes are optional, so a bad one does not stop the
+     * parse. */
+    private double parseField(String[] fields, String column, double defaultValue) {
+        Integer i = fieldKey.get(column);
+        if (i == null || i >= fields.length) {
+            return defaultValue;
+        }
+        String field = fields[i].replace("\"","").trim();
+        try {
+            return field.isEmpty() ? defaultValue : Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /** Return the attributes of the edges of cg, indexed by edge index.
+     * Edges that did not come from the parsed file get the default
+     * attributes. Precondition: parse() has been called and cg was compiled
+     * from the graph it returned (possibly reordered). */
+    public EdgeAttributes getEdgeAttributes(CompiledGraph cg) {
+        int m = cg.numEdges();
+        double[] length = new double[m];
+        double[] slope = new double[m];
+        double[] accessibility = new double[m];
+        int[] surface = new int[m];
+        if (!surfaceCodes.containsKey("unknown")) {
+            surfaceCodes.put("unknown", surfaceNames.size());
+            surfaceNames.add("unknown");
+        }
+        int unknown = surfaceCodes.get("unknown");
+        for (int e = 0; e < m; e++) {
+            accessibility[e] = cg.weight(e);
+            surface[e] = unknown;
+        }
+        // a later row for the same edge overwrites an earlier one, as it
+        // does for the weight in the graph
+        for (int row = 0; row < numRows; row++) {
+            int u = cg.indexOf(rowOrig[row]);
+            int v = cg.indexOf(rowDest[row]);
+            int e = u < 0 || v < 0 ? -1 : cg.findEdge(u, v);
+            if (e < 0) {
+                continue;
+            }
+            length[e] = rowLength[row];
+            slope[e] = rowSlope[row];
+            accessibility[e] = rowAccessibility[row];
+            surface[e] = rowSurface[row];
+        }
+        return new EdgeAttributes(length, slope, accessibility, surface,
+                surfaceNames.toArray(new String[0]));
     }
 
     /* create fieldKey from the header line of the csv file.
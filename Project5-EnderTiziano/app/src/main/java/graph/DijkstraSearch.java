@@ -0,0 +1,184 @@
+package graph;
+import java.util.Arrays;
+import java.util.Map;
+
+/** The state of a run of Dijkstra's algorithm on node indices 0 .. n-1: a
+ * distance and a parent for each node, and a binary heap of the reached nodes
+ * that are not settled yet. A node whose distance drops is moved up in place
+ * in the heap, so a search allocates nothing per edge. The caller decides
+ * which arcs leave each settled node:
+ *   search.start(s);
+ *   for (int u = search.next(); u >= 0; u = search.next()) {
+ *       // for each arc from u to v with length w
+ *       search.relax(u, v, search.distance(u) + w);
+ *   }
+ * The arrays are kept between searches, and start resets only the nodes the
+ * previous search reached, so a search that stays in a small part of a large
+ * graph costs little. Distances and parents can be read until the next start.
+ * The arrays grow when a node beyond them is reached, so a search of a Graph
+ * does not need to know its size in advance.
+ * A DijkstraSearch must not be used from several threads at once.
+ *   */
+class DijkstraSearch {
+
+    private double[] dist; // infinite for nodes not reached
+    private int[] parent; // -1 for the origin and nodes not reached
+    private int[] heap;
+    private int[] position; // index of each node in heap, or -1
+    private int size; // number of nodes in heap
+    private int[] reached; // nodes reached, in the order first reached
+    private int numReached;
+
+    /** Constructor: create a search with room for nodes 0 .. n-1. */
+    DijkstraSearch(int n) {
+        dist = new double[0];
+        parent = new int[0];
+        heap = new int[0];
+        position = new int[0];
+        reached = new int[0];
+        grow(Math.max(n, 1));
+    }
+
+    /** The cost of each edge of a CompiledGraph. */
+    interface EdgeCost {
+        /** Return the cost of edge e, which must not be negative. */
+        double cost(int e);
+    }
+
+    /** Search all of g from origin with edge costs given by cost, and return
+     * the resulting tree. Precondition: origin is a node index of g. */
+    ShortestPathTree tree(CompiledGraph g, int origin, EdgeCost cost) {
+        start(origin);
+        for (int u = next(); u >= 0; u = next()) {
+            for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                relax(u, g.head(e), dist[u] + cost.cost(e));
+            }
+        }
+        return tree(g.nodeArray(), g.nodeIndex(), origin);
+    }
+
+    /** Return the result of the last search as a tree of the given nodes,
+     * which are numbered as in the search. The tree gets copies of the
+     * distances and parents of the first nodes.length nodes and of the order
+     * nodes were reached in. See the ShortestPathTree constructor for index.
+     * Precondition: every reached node is below nodes.length. */
+    ShortestPathTree tree(Node[] nodes, Map<Node,Integer> index, int origin) {
+        grow(nodes.length);
+        return new ShortestPathTree(nodes, index, Arrays.copyOf(dist, nodes.length),
+                Arrays.copyOf(parent, nodes.length), Arrays.copyOf(reached, numReached), origin);
+    }
+
+    /* Make room for nodes 0 .. n-1 if there is not already. */
+    private void grow(int n) {
+        int capacity = dist.length;
+        if (n <= capacity) {
+            return;
+        }
+        n = Math.max(n, 2 * capacity);
+        dist = Arrays.copyOf(dist, n);
+        parent = Arrays.copyOf(parent, n);
+        heap = Arrays.copyOf(heap, n);
+        position = Arrays.copyOf(position, n);
+        reached = Arrays.copyOf(reached, n);
+        Arrays.fill(dist, capacity, n, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, capacity, n, -1);
+        Arrays.fill(position, capacity, n, -1);
+    }
+
+    /** Start a new search from s, forgetting the previous one. */
+    void start(int s) {
+        for (int i = 0; i < numReached; i++) {
+            int v = reached[i];
+            dist[v] = Double.POSITIVE_INFINITY;
+            parent[v] = -1;
+            position[v] = -1;
+        }
+        numReached = 0;
+        size = 0;
+        relax(-1, s, 0.0);
+    }
+
+    /** Remove and return the unsettled node with the smallest distance, or
+     * return -1 if every reached node is settled. */
+    int next() {
+        if (size == 0) {
+            return -1;
+        }
+        int top = heap[0];
+        position[top] = -1;
+        int last = heap[--size];
+        if (size > 0) {
+            // move smaller children up until last fits
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && dist[heap[child + 1]] < dist[heap[child]]) {
+                    child++;
+                }
+                if (dist[heap[child]] >= dist[last]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                position[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = last;
+            position[last] = i;
+        }
+        return top;
+    }
+
+    /** If newDistance is smaller than the distance of v, make it the distance
+     * of v with parent u and return true; otherwise return false.
+     * Precondition: v is not settled, which holds for nonnegative arc
+     * lengths. */
+    boolean relax(int u, int v, double newDistance) {
+        grow(v + 1);
+        if (newDistance >= dist[v]) {
+            return false;
+        }
+        if (dist[v] == Double.POSITIVE_INFINITY) {
+            reached[numReached++] = v;
+        }
+        dist[v] = newDistance;
+        parent[v] = u;
+        moveUp(v);
+        return true;
+    }
+
+    /** Like relax, but also put v back in the heap if it is settled, even if
+     * newDistance does not make its distance smaller. This is for searches
+     * whose labels can improve without their key dropping, so a node may
+     * need to be settled again. Precondition: newDistance <= distance(v). */
+    void requeue(int u, int v, double newDistance) {
+        if (!relax(u, v, newDistance) && position[v] < 0) {
+            parent[v] = u;
+            moveUp(v);
+        }
+    }
+
+    /* Put v in the heap if it is not there, and move it up to its place. */
+    private void moveUp(int v) {
+        int i = position[v] < 0 ? size++ : position[v];
+        // move parents down until v fits
+        while (i > 0 && dist[heap[(i - 1) / 2]] > dist[v]) {
+            heap[i] = heap[(i - 1) / 2];
+            position[heap[i]] = i;
+            i = (i - 1) / 2;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    /** Return the distance of v from the origin found so far, which is final
+     * once v is settled, or Double.POSITIVE_INFINITY if v is not reached. */
+    double distance(int v) {
+        return v < dist.length ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /** Return the node before v on its path from the origin, or -1 if v is
+     * the origin or not reached. */
+    int parent(int v) {
+        return v < parent.length ? parent[v] : -1;
+    }
+}
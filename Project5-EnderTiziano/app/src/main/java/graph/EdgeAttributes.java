@@ -0,0 +1,83 @@
+package graph;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Per-edge sidewalk attributes stored column by column in primitive arrays,
+ * indexed by the edge indices of a CompiledGraph. The attributes are the
+ * length of the sidewalk, its slope, its surface type and its accessibility
+ * score. Surface types are stored as small integer codes; surfaceName
+ * translates them back. See DBParser.getEdgeAttributes for how these are
+ * loaded and CostProfile for how they are turned into edge costs. */
+public class EdgeAttributes {
+
+    private final double[] length;
+    private final double[] slope;
+    private final double[] accessibility;
+    private final int[] surface; // surface code of each edge
+
+    private final String[] surfaceNames; // maps surface codes to names
+    private final HashMap<String,Integer> surfaceCodes; // maps names to codes
+
+    /** Constructor: wrap the given columns, which are used directly, not
+     * copied. surface[e] is an index into surfaceNames. Precondition: all
+     * columns have the same length. */
+    EdgeAttributes(double[] length, double[] slope, double[] accessibility,
+            int[] surface, String[] surfaceNames) {
+        this.length = length;
+        this.slope = slope;
+        this.accessibility = accessibility;
+        this.surface = surface;
+        this.surfaceNames = surfaceNames;
+        surfaceCodes = new HashMap<String,Integer>();
+        for (int i = 0; i < surfaceNames.length; i++) {
+            surfaceCodes.put(surfaceNames[i], i);
+        }
+    }
+
+    /** Return the number of edges. */
+    public int numEdges() {
+        return length.length;
+    }
+
+    /** Return the length of edge e. */
+    public double length(int e) {
+        return length[e];
+    }
+
+    /** Return the slope of edge e. */
+    public double slope(int e) {
+        return slope[e];
+    }
+
+    /** Return the accessibility score of edge e. */
+    public double accessibility(int e) {
+        return accessibility[e];
+    }
+
+    /** Return the surface code of edge e. */
+    public int surface(int e) {
+        return surface[e];
+    }
+
+    /** Return the number of distinct surface types. */
+    public int numSurfaces() {
+        return surfaceNames.length;
+    }
+
+    /** Return the name of the surface type with the given code. */
+    public String surfaceName(int code) {
+        return surfaceNames[code];
+    }
+
+    /** Return the code of the surface type with the given name, or -1 if no
+     * edge has that surface. */
+    public int surfaceCode(String name) {
+        Integer code = surfaceCodes.get(name);
+        return code == null ? -1 : code;
+    }
+
+    /** Return a copy of the surface names, indexed by code. */
+    public String[] surfaceNames() {
+        return Arrays.copyOf(surfaceNames, surfaceNames.length);
+    }
+}
@@ -18,12 +18,14 @@ public class Graph {
     }
 
     /** Return the node with id s. If no such node exists already, create
-     * and return it. */
+     * and return it. Nodes are numbered from 0 in the order they are created;
+     * searches use these numbers as array indices. */
     public Node getNode(String s) {
         if (IDnodes.containsKey(s)) {
             return IDnodes.get(s);
         }
         Node n = new Node(s);
+        n.setIndex(IDnodes.size());
         IDnodes.put(s, n);
         return n;
     }
@@ -43,7 +45,8 @@ public class Graph {
     }
 
     /** Print a report of the graph's statistics, including number of nodes,
-     * number of edges, and average degree. */
+     * number of edges, and average degree. See GraphAnalytics for degree and
+     * weight distributions, components, diameter, and centrality. */
     public void report() {
         int numNodes = IDnodes.size();
         int numEdges = 0;
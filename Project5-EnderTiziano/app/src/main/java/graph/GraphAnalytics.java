@@ -0,0 +1,533 @@
+package graph;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/** Statistics of a CompiledGraph, computed in parallel on the common
+ * fork/join pool:
+ *  - histograms of out-degrees and in-degrees,
+ *  - a histogram of edge weights in equal-width buckets,
+ *  - the sizes of the weakly connected components,
+ *  - a lower bound on the diameter (the largest shortest path length) found
+ *    by repeated double sweeps: a search from some node finds the farthest
+ *    node, a search from that node finds the farthest node again, and so on,
+ *  - betweenness centrality estimated with Brandes' algorithm from a random
+ *    sample of source nodes, scaled up to the whole graph.
+ * Histograms and the union-find for the components work on chunks of nodes or
+ * edges in parallel; the betweenness searches are spread over one worker per
+ * processor, each with its own scratch arrays and totals. The results are
+ * available from getters or as one JSON object; this is the full counterpart
+ * of Graph.report, which only counts nodes and edges.
+ * Sample usage:
+ *   GraphAnalytics analytics = GraphAnalytics.analyze(new CompiledGraph(g), 32);
+ *   System.out.println(analytics.toJson());
+ *   */
+public class GraphAnalytics {
+
+    // number of buckets in the weight histogram
+    private static final int WEIGHT_BUCKETS = 20;
+    // number of double sweeps for the diameter
+    private static final int SWEEPS = 4;
+    // number of nodes and component sizes listed in the JSON output
+    private static final int TOP = 10;
+    // seed for choosing betweenness sources, so reports are repeatable
+    private static final long SEED = 2025;
+
+    private final CompiledGraph graph;
+
+    private long[] outDegreeHistogram;
+    private long[] inDegreeHistogram;
+
+    private DoubleSummaryStatistics weightStats;
+    private double bucketWidth;
+    private long[] weightHistogram;
+
+    private int[] componentSizes; // in decreasing order
+
+    private double diameter;
+    private int diameterFrom = -1;
+    private int diameterTo = -1;
+
+    private int numSamples;
+    private double[] betweenness;
+
+    // milliseconds spent on each part
+    private long degreeMillis, weightMillis, componentMillis, diameterMillis, betweennessMillis;
+
+    /* Constructor: create empty analytics for g; see analyze. */
+    private GraphAnalytics(CompiledGraph g) {
+        this.graph = g;
+    }
+
+    /** Return the statistics of g, estimating betweenness centrality from
+     * numSamples random source nodes (none if numSamples is 0). If numSamples
+     * is at least the number of nodes, every node is a source once and the
+     * betweenness is exact.
+     * Precondition: numSamples >= 0. */
+    public static GraphAnalytics analyze(CompiledGraph g, int numSamples) {
+        GraphAnalytics a = new GraphAnalytics(g);
+        long start = System.nanoTime();
+        a.computeDegrees();
+        a.degreeMillis = millisSince(start);
+        start = System.nanoTime();
+        a.computeWeights();
+        a.weightMillis = millisSince(start);
+        start = System.nanoTime();
+        int largest = a.computeComponents();
+        a.componentMillis = millisSince(start);
+        start = System.nanoTime();
+        if (largest >= 0) {
+            a.computeDiameter(largest);
+        }
+        a.diameterMillis = millisSince(start);
+        start = System.nanoTime();
+        a.computeBetweenness(Math.min(numSamples, g.numNodes()));
+        a.betweennessMillis = millisSince(start);
+        return a;
+    }
+
+    /* Return the milliseconds elapsed since System.nanoTime() was start. */
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /** Return the graph analyzed. */
+    public CompiledGraph getGraph() {
+        return graph;
+    }
+
+    /** Return the number of nodes with each out-degree: element d counts the
+     * nodes with d outgoing edges. */
+    public long[] getOutDegreeHistogram() {
+        return outDegreeHistogram.clone();
+    }
+
+    /** Return the number of nodes with each in-degree. */
+    public long[] getInDegreeHistogram() {
+        return inDegreeHistogram.clone();
+    }
+
+    /** Return the number of edges in each weight bucket. Bucket i holds the
+     * weights from getMinWeight() + i * getBucketWidth(), and the last bucket
+     * also holds getMaxWeight(). There is a single bucket if all weights are
+     * equal, and none if the graph has no edges. */
+    public long[] getWeightHistogram() {
+        return weightHistogram.clone();
+    }
+
+    /** Return the width of the weight buckets. */
+    public double getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /** Return the smallest edge weight, or 0 if there are no edges. */
+    public double getMinWeight() {
+        return weightStats.getCount() == 0 ? 0.0 : weightStats.getMin();
+    }
+
+    /** Return the largest edge weight, or 0 if there are no edges. */
+    public double getMaxWeight() {
+        return weightStats.getCount() == 0 ? 0.0 : weightStats.getMax();
+    }
+
+    /** Return the sizes of the weakly connected components, largest first.
+     * Edge directions are ignored for these. */
+    public int[] getComponentSizes() {
+        return componentSizes.clone();
+    }
+
+    /** Return the longest shortest path length found by the double sweeps. The
+     * true diameter is at least this; it may be larger, especially on directed
+     * graphs, where a sweep only sees what its start node can reach. */
+    public double getDiameterLowerBound() {
+        return diameter;
+    }
+
+    /** Return the node that getDiameterLowerBound() starts from, or null if
+     * the graph has no edges. */
+    public Node getDiameterFrom() {
+        return diameterFrom < 0 ? null : graph.getNode(diameterFrom);
+    }
+
+    /** Return the node that getDiameterLowerBound() ends at, or null if the
+     * graph has no edges. */
+    public Node getDiameterTo() {
+        return diameterTo < 0 ? null : graph.getNode(diameterTo);
+    }
+
+    /** Return the number of source nodes the betweenness was estimated from. */
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    /** Return the estimated betweenness centrality of node v: the number of
+     * shortest paths between other nodes that pass through v, where pairs with
+     * several shortest paths count each path fractionally. 0 if no samples
+     * were taken. */
+    public double betweenness(int v) {
+        return betweenness[v];
+    }
+
+    /** Return the nodes with the highest estimated betweenness, at most
+     * count of them, highest first. */
+    public int[] topBetweenness(int count) {
+        // keep the count best seen so far, worst on top
+        PriorityQueue<Integer> best = new PriorityQueue<>(
+                Comparator.comparingDouble((Integer v) -> betweenness[v]).thenComparing(v -> -v));
+        for (int v = 0; v < betweenness.length; v++) {
+            if (betweenness[v] <= 0.0) {
+                continue;
+            }
+            best.add(v);
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        int[] result = new int[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+        }
+        return result;
+    }
+
+    /* Fill in the degree histograms. */
+    private void computeDegrees() {
+        int n = graph.numNodes();
+        outDegreeHistogram = histogram(n, graph::outDegree);
+        AtomicIntegerArray inDegree = new AtomicIntegerArray(n);
+        IntStream.range(0, graph.numEdges()).parallel()
+                 .forEach(e -> inDegree.getAndIncrement(graph.head(e)));
+        inDegreeHistogram = histogram(n, inDegree::get);
+    }
+
+    /* Fill in the weight statistics and histogram. */
+    private void computeWeights() {
+        int m = graph.numEdges();
+        weightStats = IntStream.range(0, m).parallel().mapToDouble(graph::weight).summaryStatistics();
+        if (m == 0) {
+            weightHistogram = new long[0];
+            return;
+        }
+        double min = weightStats.getMin();
+        bucketWidth = (weightStats.getMax() - min) / WEIGHT_BUCKETS;
+        weightHistogram = histogram(m, e -> bucketWidth == 0.0 ? 0
+                : Math.min(WEIGHT_BUCKETS - 1, (int) ((graph.weight(e) - min) / bucketWidth)));
+    }
+
+    /* Fill in the component sizes and return a node of the largest
+     * component, or -1 if the graph has no edges. */
+    private int computeComponents() {
+        int n = graph.numNodes();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            parent.set(v, v);
+        }
+        IntStream.range(0, n).parallel().forEach(u -> {
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                union(parent, u, graph.head(e));
+            }
+        });
+
+        int[] size = new int[n];
+        for (int v = 0; v < n; v++) {
+            size[find(parent, v)]++;
+        }
+        int largest = -1;
+        int numComponents = 0;
+        for (int v = 0; v < n; v++) {
+            if (size[v] > 0) {
+                numComponents++;
+                if (largest < 0 || size[v] > size[largest]) {
+                    largest = v;
+                }
+            }
+        }
+        componentSizes = new int[numComponents];
+        int i = 0;
+        for (int v = 0; v < n; v++) {
+            if (size[v] > 0) {
+                // negated so that sorting puts the largest first
+                componentSizes[i++] = -size[v];
+            }
+        }
+        Arrays.sort(componentSizes);
+        for (i = 0; i < numComponents; i++) {
+            componentSizes[i] = -componentSizes[i];
+        }
+        return graph.numEdges() == 0 ? -1 : largest;
+    }
+
+    /* Return the root of v's tree, halving the path on the way. */
+    private static int find(AtomicIntegerArray parent, int v) {
+        int p = parent.get(v);
+        while (p != v) {
+            int grandparent = parent.get(p);
+            // another thread may have moved v already; either way v gets
+            // closer to the root
+            parent.compareAndSet(v, p, grandparent);
+            v = p;
+            p = parent.get(v);
+        }
+        return v;
+    }
+
+    /* Merge the trees of u and v. The root with the larger index is always
+     * hung below the other, so concurrent unions cannot make a cycle. */
+    private static void union(AtomicIntegerArray parent, int u, int v) {
+        while (true) {
+            int ru = find(parent, u);
+            int rv = find(parent, v);
+            if (ru == rv) {
+                return;
+            }
+            if (ru < rv) {
+                int swap = ru;
+                ru = rv;
+                rv = swap;
+            }
+            if (parent.compareAndSet(ru, ru, rv)) {
+                return;
+            }
+        }
+    }
+
+    /* Fill in the diameter bound by double sweeps starting at start. */
+    private void computeDiameter(int start) {
+        DijkstraSearch search = new DijkstraSearch(graph.numNodes());
+        int from = start;
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            int farthest = farthestNode(from, search);
+            if (search.distance(farthest) > diameter || diameterFrom < 0) {
+                diameter = search.distance(farthest);
+                diameterFrom = from;
+                diameterTo = farthest;
+            }
+            if (farthest == from) {
+                break;
+            }
+            from = farthest;
+        }
+    }
+
+    /* Run search from s and return the reachable node farthest from s. */
+    private int farthestNode(int s, DijkstraSearch search) {
+        int farthest = s;
+        search.start(s);
+        for (int u = search.next(); u >= 0; u = search.next()) {
+            farthest = u; // nodes are settled in order of distance
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                search.relax(u, graph.head(e), search.distance(u) + graph.weight(e));
+            }
+        }
+        return farthest;
+    }
+
+    /* Fill in the betweenness estimate from numSamples random sources. */
+    private void computeBetweenness(int numSamples) {
+        int n = graph.numNodes();
+        this.numSamples = numSamples;
+        if (numSamples == 0) {
+            betweenness = new double[n];
+            return;
+        }
+        // sampling every node gives the exact betweenness
+        Random random = new Random(SEED);
+        int[] sources = new int[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            sources[i] = numSamples == n ? i : random.nextInt(n);
+        }
+
+        int numWorkers = Math.min(numSamples, Runtime.getRuntime().availableProcessors());
+        double[] total = IntStream.range(0, numWorkers).parallel().mapToObj(w -> {
+            BrandesWorker worker = new BrandesWorker(n);
+            for (int i = w; i < numSamples; i += numWorkers) {
+                worker.accumulate(sources[i]);
+            }
+            return worker.centrality;
+        }).reduce((a, b) -> {
+            for (int v = 0; v < a.length; v++) {
+                a[v] += b[v];
+            }
+            return a;
+        }).get();
+
+        double scale = (double) n / numSamples;
+        for (int v = 0; v < n; v++) {
+            total[v] *= scale;
+        }
+        betweenness = total;
+    }
+
+    /* One betweenness worker: Brandes' algorithm for single sources, with
+     * scratch arrays reused between sources and reset only where touched. */
+    private class BrandesWorker {
+        final double[] centrality;
+        final DijkstraSearch search;
+        final double[] sigma; // number of shortest paths from the source
+        final double[] delta; // dependency of the source on each node
+        final int[] order; // nodes in the order they were settled
+
+        BrandesWorker(int n) {
+            centrality = new double[n];
+            search = new DijkstraSearch(n);
+            sigma = new double[n];
+            delta = new double[n];
+            order = new int[n];
+        }
+
+        /* Add the dependencies of source s to centrality. */
+        void accumulate(int s) {
+            search.start(s);
+            sigma[s] = 1.0;
+            int numSettled = 0;
+            for (int u = search.next(); u >= 0; u = search.next()) {
+                order[numSettled++] = u;
+                for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                    int v = graph.head(e);
+                    double newDistance = search.distance(u) + graph.weight(e);
+                    if (search.relax(u, v, newDistance)) {
+                        sigma[v] = sigma[u];
+                    } else if (newDistance == search.distance(v)) {
+                        // another shortest path to v
+                        sigma[v] += sigma[u];
+                    }
+                }
+            }
+
+            // in reverse order of distance, pass each node's dependency back
+            // to the nodes it is a shortest path successor of
+            for (int i = numSettled - 1; i >= 0; i--) {
+                int u = order[i];
+                for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                    int v = graph.head(e);
+                    if (v != u && search.distance(u) + graph.weight(e) == search.distance(v)) {
+                        delta[u] += sigma[u] / sigma[v] * (1.0 + delta[v]);
+                    }
+                }
+                if (u != s) {
+                    centrality[u] += delta[u];
+                }
+            }
+            for (int i = 0; i < numSettled; i++) {
+                int u = order[i];
+                sigma[u] = 0.0;
+                delta[u] = 0.0;
+            }
+        }
+    }
+
+    /* Return the histogram of value(i) for 0 <= i < count: element x counts
+     * the i with value(i) == x, up to the largest value. Chunks of indices are
+     * counted in parallel. Precondition: value(i) >= 0. */
+    private static long[] histogram(int count, IntUnaryOperator value) {
+        int numChunks = 4 * Runtime.getRuntime().availableProcessors();
+        long[] counts = IntStream.range(0, numChunks).parallel().mapToObj(c -> {
+            long[] local = new long[16];
+            int end = (int) ((long) count * (c + 1) / numChunks);
+            for (int i = (int) ((long) count * c / numChunks); i < end; i++) {
+                int x = value.applyAsInt(i);
+                if (x >= local.length) {
+                    local = Arrays.copyOf(local, Math.max(2 * local.length, x + 1));
+                }
+                local[x]++;
+            }
+            return local;
+        }).reduce(new long[0], (a, b) -> {
+            long[] sum = Arrays.copyOf(a.length >= b.length ? a : b, Math.max(a.length, b.length));
+            long[] other = a.length >= b.length ? b : a;
+            for (int x = 0; x < other.length; x++) {
+                sum[x] += other[x];
+            }
+            return sum;
+        });
+        int length = counts.length;
+        while (length > 0 && counts[length - 1] == 0) {
+            length--;
+        }
+        return Arrays.copyOf(counts, length);
+    }
+
+    /** Return the statistics as a JSON object. Components and betweenness
+     * list only the largest few. */
+    public String toJson() {
+        int n = graph.numNodes();
+        int m = graph.numEdges();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"nodes\":").append(n).append(",\"edges\":").append(m);
+        json.append(",\"averageDegree\":").append(n == 0 ? 0.0 : (double) m / n);
+        json.append(",\"outDegreeHistogram\":");
+        appendArray(json, outDegreeHistogram);
+        json.append(",\"inDegreeHistogram\":");
+        appendArray(json, inDegreeHistogram);
+
+        json.append(",\"weights\":{\"min\":").append(getMinWeight())
+            .append(",\"max\":").append(getMaxWeight())
+            .append(",\"mean\":").append(weightStats.getAverage())
+            .append(",\"bucketWidth\":").append(bucketWidth)
+            .append(",\"histogram\":");
+        appendArray(json, weightHistogram);
+        json.append('}');
+
+        json.append(",\"components\":{\"count\":").append(componentSizes.length)
+            .append(",\"largest\":[");
+        for (int i = 0; i < Math.min(TOP, componentSizes.length); i++) {
+            json.append(i > 0 ? "," : "").append(componentSizes[i]);
+        }
+        long singletons = Arrays.stream(componentSizes).filter(size -> size == 1).count();
+        json.append("],\"singletons\":").append(singletons).append('}');
+
+        json.append(",\"diameter\":{\"lowerBound\":").append(diameter)
+            .append(",\"from\":").append(BatchQueryRunner.quote(diameterFrom < 0 ? null : graph.getNode(diameterFrom).getId()))
+            .append(",\"to\":").append(BatchQueryRunner.quote(diameterTo < 0 ? null : graph.getNode(diameterTo).getId()))
+            .append('}');
+
+        json.append(",\"betweenness\":{\"samples\":").append(numSamples).append(",\"top\":[");
+        int[] top = topBetweenness(TOP);
+        for (int i = 0; i < top.length; i++) {
+            json.append(i > 0 ? "," : "").append("{\"node\":")
+                .append(BatchQueryRunner.quote(graph.getNode(top[i]).getId()))
+                .append(",\"value\":").append(betweenness[top[i]]).append('}');
+        }
+        json.append("]}");
+
+        json.append(",\"millis\":{\"degrees\":").append(degreeMillis)
+            .append(",\"weights\":").append(weightMillis)
+            .append(",\"components\":").append(componentMillis)
+            .append(",\"diameter\":").append(diameterMillis)
+            .append(",\"betweenness\":").append(betweennessMillis).append("}}");
+        return json.toString();
+    }
+
+    /* Append counts to json as an array. */
+    private static void appendArray(StringBuilder json, long[] counts) {
+        json.append('[');
+        for (int i = 0; i < counts.length; i++) {
+            json.append(i > 0 ? "," : "").append(counts[i]);
+        }
+        json.append(']');
+    }
+
+    /** Print the statistics of a graph as JSON. Usage:
+     *   GraphAnalytics FILETYPE FILENAME [SAMPLES]
+     * where SAMPLES is the number of betweenness sources (default 32). */
+    public static void main(String[] args) {
+        String fileType = args[0];
+        String fileName = args[1];
+        int numSamples = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        Graph graph;
+        try {
+            graph = ShortestPaths.parseGraph(fileType, fileName);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open file " + fileName);
+            return;
+        }
+        System.out.println(analyze(new CompiledGraph(graph), numSamples).toJson());
+    }
+}
@@ -0,0 +1,388 @@
+package graph;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** A hub labeling distance oracle built with pruned landmark labeling. Every
+ * node v gets an out-label, a list of hubs v can reach with their distances,
+ * and an in-label, a list of hubs that can reach v with their distances, such
+ * that every shortest path from s to t passes through a hub in both the
+ * out-label of s and the in-label of t. The distance from s to t is then the
+ * minimum of d(s, h) + d(h, t) over the common hubs h, found by one linear
+ * merge of two sorted arrays, without searching the graph.
+ *
+ * Labels are built by one forward and one backward Dijkstra search from each
+ * node in decreasing order of degree, pruning every node whose distance the
+ * labels built so far already answer. Hubs are identified by their position
+ * in that order, so each label is sorted simply by being built in order.
+ * Distances agree with ShortestPaths up to rounding in the last bits.
+ * Sample usage:
+ *   HubLabels labels = HubLabels.build(new CompiledGraph(g));
+ *   double abLength = labels.shortestPathLength(g.getNode("A"), g.getNode("B"));
+ *   */
+public class HubLabels {
+
+    // first int of the serialized form, to recognize hub label files
+    private static final int MAGIC = 0x48554231;
+
+    private final Node[] nodes; // maps node indices to nodes
+    private final HashMap<Node,Integer> index; // maps nodes to node indices
+
+    // the out-label of v is outHub/outDist[outStart[v]] .. [outStart[v+1]-1],
+    // sorted by hub rank; likewise for in-labels
+    private final int[] outStart;
+    private final int[] outHub;
+    private final double[] outDist;
+    private final int[] inStart;
+    private final int[] inHub;
+    private final double[] inDist;
+
+    private long buildNanos; // time taken by build, or 0 if read from a file
+
+    /** Constructor: wrap the given label arrays, which are used directly. */
+    private HubLabels(Node[] nodes, int[] outStart, int[] outHub, double[] outDist,
+            int[] inStart, int[] inHub, double[] inDist) {
+        this.nodes = nodes;
+        this.outStart = outStart;
+        this.outHub = outHub;
+        this.outDist = outDist;
+        this.inStart = inStart;
+        this.inHub = inHub;
+        this.inDist = inDist;
+        index = new HashMap<Node,Integer>();
+        for (int i = 0; i < nodes.length; i++) {
+            index.put(nodes[i], i);
+        }
+    }
+
+    /** Build the hub labels of g. */
+    public static HubLabels build(CompiledGraph g) {
+        long start = System.nanoTime();
+        int n = g.numNodes();
+        CompiledGraph rev = g.reverse();
+
+        // search from high degree nodes first: they cover the most paths,
+        // which keeps later searches and labels small
+        Integer[] byDegree = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            byDegree[v] = v;
+        }
+        Arrays.sort(byDegree, (a, b) -> Integer.compare(
+                g.outDegree(b) + rev.outDegree(b), g.outDegree(a) + rev.outDegree(a)));
+
+        LabelLists out = new LabelLists(n);
+        LabelLists in = new LabelLists(n);
+        double[] rootDist = new double[n]; // root's label distances, by hub rank
+        Arrays.fill(rootDist, Double.POSITIVE_INFINITY);
+        DijkstraSearch search = new DijkstraSearch(n);
+        for (int rank = 0; rank < n; rank++) {
+            int root = byDegree[rank];
+            // forward: root is an in-hub of the nodes it reaches
+            prunedSearch(g, root, rank, out, in, rootDist, search);
+            // backward: root is an out-hub of the nodes that reach it
+            prunedSearch(rev, root, rank, in, out, rootDist, search);
+        }
+
+        HubLabels labels = new HubLabels(g.nodeArray(), out.start(), out.hubArray(),
+                out.distArray(), in.start(), in.hubArray(), in.distArray());
+        labels.buildNanos = System.nanoTime() - start;
+        return labels;
+    }
+
+    /* Run Dijkstra's algorithm on g from root, which has the given rank,
+     * using search. Every settled node v whose distance d is not already
+     * covered by rootLabels of root and targetLabels of v gets (rank, d)
+     * appended to targetLabels; covered nodes are not expanded. rootDist must
+     * be all infinite on entry and is left that way. */
+    private static void prunedSearch(CompiledGraph g, int root, int rank,
+            LabelLists rootLabels, LabelLists targetLabels, double[] rootDist,
+            DijkstraSearch search) {
+        for (int i = 0; i < rootLabels.size[root]; i++) {
+            rootDist[rootLabels.hub[root][i]] = rootLabels.dist[root][i];
+        }
+
+        search.start(root);
+        for (int v = search.next(); v >= 0; v = search.next()) {
+            double d = search.distance(v);
+
+            // prune v if a hub already processed gives a path this short
+            double covered = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < targetLabels.size[v]; i++) {
+                covered = Math.min(covered,
+                        rootDist[targetLabels.hub[v][i]] + targetLabels.dist[v][i]);
+            }
+            if (covered <= d) {
+                continue;
+            }
+            targetLabels.add(v, rank, d);
+
+            for (int e = g.edgeStart(v); e < g.edgeEnd(v); e++) {
+                search.relax(v, g.head(e), d + g.weight(e));
+            }
+        }
+
+        for (int i = 0; i < rootLabels.size[root]; i++) {
+            rootDist[rootLabels.hub[root][i]] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /** Returns the length of the shortest path from the node with index s to
+     * the node with index t, or Double.POSITIVE_INFINITY if none exists. */
+    public double distance(int s, int t) {
+        double best = Double.POSITIVE_INFINITY;
+        int i = outStart[s];
+        int j = inStart[t];
+        int outEnd = outStart[s + 1];
+        int inEnd = inStart[t + 1];
+        while (i < outEnd && j < inEnd) {
+            if (outHub[i] < inHub[j]) {
+                i++;
+            } else if (outHub[i] > inHub[j]) {
+                j++;
+            } else {
+                best = Math.min(best, outDist[i++] + inDist[j++]);
+            }
+        }
+        return best;
+    }
+
+    /** Returns the length of the shortest path from origin to destination.
+     * If no path exists, or either node is not in the graph, return
+     * Double.POSITIVE_INFINITY. */
+    public double shortestPathLength(Node origin, Node destination) {
+        Integer s = index.get(origin);
+        Integer t = index.get(destination);
+        if (s == null || t == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return distance(s, t);
+    }
+
+    /** Return the number of nodes. */
+    public int numNodes() {
+        return nodes.length;
+    }
+
+    /** Return the total number of entries in all in- and out-labels. */
+    public long numLabelEntries() {
+        return (long) outHub.length + inHub.length;
+    }
+
+    /** Return the time taken to build the labels in nanoseconds, or 0 if they
+     * were read from a file. */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /** Print a report of the labels' statistics, including build time and
+     * label sizes. */
+    public void report() {
+        int maxLabel = 0;
+        for (int v = 0; v < nodes.length; v++) {
+            maxLabel = Math.max(maxLabel, outStart[v + 1] - outStart[v]);
+            maxLabel = Math.max(maxLabel, inStart[v + 1] - inStart[v]);
+        }
+        System.out.println("Hub labels have: ");
+        System.out.println(numLabelEntries() + " entries.");
+        System.out.println("Average label size " + ((double) numLabelEntries()) / (2.0 * nodes.length));
+        System.out.println("Max label size " + maxLabel);
+        System.out.println("Memory " + (numLabelEntries() * 12 + 8L * (nodes.length + 1)) + " bytes.");
+        System.out.println("Built in " + buildNanos / 1000000 + " ms.");
+    }
+
+    /** Write the labels to out, gzip-compressed. Hub ranks within a label are
+     * stored as variable-length gaps from the previous hub. Node ids are
+     * written in index order, so labels read back answer queries for the
+     * same nodes. */
+    public void write(OutputStream out) throws IOException {
+        GZIPOutputStream zip = new GZIPOutputStream(new BufferedOutputStream(out));
+        DataOutputStream data = new DataOutputStream(zip);
+        data.writeInt(MAGIC);
+        data.writeInt(nodes.length);
+        for (Node v : nodes) {
+            data.writeUTF(v.getId());
+        }
+        writeLabels(data, outStart, outHub, outDist);
+        writeLabels(data, inStart, inHub, inDist);
+        data.flush();
+        zip.finish();
+        zip.flush();
+    }
+
+    private static void writeLabels(DataOutputStream data, int[] start, int[] hub,
+            double[] dist) throws IOException {
+        for (int v = 0; v + 1 < start.length; v++) {
+            writeVarint(data, start[v + 1] - start[v]);
+            int previous = 0;
+            for (int i = start[v]; i < start[v + 1]; i++) {
+                writeVarint(data, hub[i] - previous);
+                previous = hub[i];
+                data.writeDouble(dist[i]);
+            }
+        }
+    }
+
+    /** Read labels written by write(). */
+    public static HubLabels read(InputStream stream) throws IOException {
+        DataInputStream data = new DataInputStream(
+                new GZIPInputStream(new BufferedInputStream(stream)));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a hub label file");
+        }
+        int n = data.readInt();
+        Node[] nodes = new Node[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = new Node(data.readUTF());
+        }
+        LabelLists out = readLabels(data, n);
+        LabelLists in = readLabels(data, n);
+        return new HubLabels(nodes, out.start(), out.hubArray(), out.distArray(),
+                in.start(), in.hubArray(), in.distArray());
+    }
+
+    private static LabelLists readLabels(DataInputStream data, int n) throws IOException {
+        LabelLists labels = new LabelLists(n);
+        for (int v = 0; v < n; v++) {
+            int size = readVarint(data);
+            int hub = 0;
+            for (int i = 0; i < size; i++) {
+                hub += readVarint(data);
+                labels.add(v, hub, data.readDouble());
+            }
+        }
+        return labels;
+    }
+
+    /* Write a nonnegative int in 7-bit groups, low group first, with the high
+     * bit of each byte set if more groups follow. */
+    private static void writeVarint(DataOutputStream data, int x) throws IOException {
+        while ((x & ~0x7F) != 0) {
+            data.writeByte((x & 0x7F) | 0x80);
+            x >>>= 7;
+        }
+        data.writeByte(x);
+    }
+
+    private static int readVarint(DataInputStream data) throws IOException {
+        int x = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data.readUnsignedByte();
+            x |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return x;
+            }
+        }
+    }
+
+    /* Per-node growable label lists, used while building or reading. */
+    private static class LabelLists {
+        int[][] hub;
+        double[][] dist;
+        int[] size;
+        long total;
+
+        LabelLists(int n) {
+            hub = new int[n][];
+            dist = new double[n][];
+            size = new int[n];
+        }
+
+        void add(int v, int h, double d) {
+            if (hub[v] == null) {
+                hub[v] = new int[4];
+                dist[v] = new double[4];
+            } else if (size[v] == hub[v].length) {
+                hub[v] = Arrays.copyOf(hub[v], 2 * size[v]);
+                dist[v] = Arrays.copyOf(dist[v], 2 * size[v]);
+            }
+            hub[v][size[v]] = h;
+            dist[v][size[v]++] = d;
+            total++;
+        }
+
+        /* Return the CSR offsets of the flattened lists. */
+        int[] start() {
+            int[] start = new int[size.length + 1];
+            for (int v = 0; v < size.length; v++) {
+                start[v + 1] = start[v] + size[v];
+            }
+            return start;
+        }
+
+        int[] hubArray() {
+            int[] flat = new int[(int) total];
+            int k = 0;
+            for (int v = 0; v < size.length; v++) {
+                for (int i = 0; i < size[v]; i++) {
+                    flat[k++] = hub[v][i];
+                }
+            }
+            return flat;
+        }
+
+        double[] distArray() {
+            double[] flat = new double[(int) total];
+            int k = 0;
+            for (int v = 0; v < size.length; v++) {
+                for (int i = 0; i < size[v]; i++) {
+                    flat[k++] = dist[v][i];
+                }
+            }
+            return flat;
+        }
+    }
+
+    /** Main method: build hub labels for a graph, report their size and build
+     * time, time random distance queries, and optionally save the labels.
+     * Usage: HubLabels FILETYPE FILENAME [OUTFILE] */
+    public static void main(String[] args) {
+        Graph graph;
+        try {
+            graph = ShortestPaths.parseGraph(args[0], args[1]);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open file " + args[1]);
+            return;
+        }
+        graph.report();
+        HubLabels labels = build(new CompiledGraph(graph));
+        labels.report();
+        if (labels.numNodes() == 0) {
+            return;
+        }
+
+        int numQueries = 1000000;
+        Random random = new Random(1);
+        double sum = 0.0; // keeps the queries from being optimized away
+        long start = System.nanoTime();
+        for (int i = 0; i < numQueries; i++) {
+            double d = labels.distance(random.nextInt(labels.numNodes()),
+                    random.nextInt(labels.numNodes()));
+            sum += d == Double.POSITIVE_INFINITY ? 0.0 : d;
+        }
+        System.out.printf("%.3f us/query (checksum %.1f)%n",
+                (System.nanoTime() - start) / 1000.0 / numQueries, sum);
+
+        if (args.length > 2) {
+            File file = new File(args[2]);
+            try (OutputStream out = new FileOutputStream(file)) {
+                labels.write(out);
+            } catch (IOException e) {
+                System.out.println("Could not write file " + args[2]);
+                return;
+            }
+            System.out.println("Wrote " + file.length() + " bytes to " + file);
+        }
+    }
+}
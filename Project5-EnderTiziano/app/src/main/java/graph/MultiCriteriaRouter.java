@@ -0,0 +1,179 @@
+package graph;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Routing on a CompiledGraph with edge costs computed from EdgeAttributes.
+ * The cost of each edge is evaluated from the attribute columns during the
+ * search, so any CostProfile can be used for any query without rebuilding the
+ * graph. Besides single-profile shortest paths, the router computes the
+ * Pareto-optimal paths for two profiles at once: every path for which no other
+ * path is at least as cheap in both costs and cheaper in one.
+ * Sample usage:
+ *   DBParser parser = new DBParser();
+ *   parser.open(file);
+ *   CompiledGraph cg = new CompiledGraph(parser.parse());
+ *   MultiCriteriaRouter router = new MultiCriteriaRouter(cg, parser.getEdgeAttributes(cg));
+ *   ShortestPathTree tree = router.compute(a, CostProfile.length());
+ *   List<MultiCriteriaRouter.ParetoPath> front =
+ *       router.paretoPaths(a, b, CostProfile.length(), CostProfile.accessibility());
+ *   */
+public class MultiCriteriaRouter {
+
+    private final CompiledGraph graph;
+    private final EdgeAttributes attrs;
+
+    /** Constructor: create a router for g with the given edge attributes.
+     * Precondition: attrs is indexed by the edge indices of g. */
+    public MultiCriteriaRouter(CompiledGraph g, EdgeAttributes attrs) {
+        if (g.numEdges() != attrs.numEdges()) {
+            throw new IllegalArgumentException(
+                    "Attributes do not match graph: " + attrs.numEdges()
+                    + " attributes for " + g.numEdges() + " edges");
+        }
+        this.graph = g;
+        this.attrs = attrs;
+    }
+
+    /** Compute the shortest paths from origin to all nodes using Dijkstra's
+     * algorithm, with edge costs given by profile.
+     * Precondition: origin is a node in the graph. */
+    public ShortestPathTree compute(Node origin, CostProfile profile) {
+        double[] penalties = profile.surfacePenalties(attrs);
+        return new DijkstraSearch(graph.numNodes()).tree(graph, graph.indexOf(origin),
+                e -> profile.cost(attrs, penalties, e));
+    }
+
+    /** Return the Pareto-optimal paths from origin to dest under the costs
+     * given by first and second, ordered by increasing first cost (and so by
+     * decreasing second cost). Paths with identical costs are reported once.
+     * The list is empty if dest is unreachable.
+     * Precondition: origin and dest are nodes in the graph. */
+    public List<ParetoPath> paretoPaths(Node origin, Node dest, CostProfile first,
+            CostProfile second) {
+        int n = graph.numNodes();
+        int s = graph.indexOf(origin);
+        int t = graph.indexOf(dest);
+        double[] penalties1 = first.surfacePenalties(attrs);
+        double[] penalties2 = second.surfacePenalties(attrs);
+
+        // labels are partial paths: the node they end at and the label they
+        // extend; their two costs travel in their queue entries
+        LabelStore labels = new LabelStore();
+        // smallest second cost of any label settled at each node; since labels
+        // are settled in increasing order of first cost, a label is dominated
+        // exactly when its second cost is not below this
+        double[] minSecond = new double[n];
+        Arrays.fill(minSecond, Double.POSITIVE_INFINITY);
+
+        PriorityQueue<LabelEntry> queue = new PriorityQueue<>(
+                Comparator.comparingDouble((LabelEntry e) -> e.cost)
+                          .thenComparingDouble(e -> e.secondCost));
+        queue.add(new LabelEntry(labels.add(s, -1), 0.0, 0.0));
+
+        ArrayList<ParetoPath> front = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            LabelEntry currentEntry = queue.poll();
+            int label = currentEntry.label;
+            int u = labels.node[label];
+            double c1 = currentEntry.cost;
+            double c2 = currentEntry.secondCost;
+            // skip labels dominated at their node or by a path already found
+            if (c2 >= minSecond[u] || c2 >= minSecond[t]) {
+                continue;
+            }
+            minSecond[u] = c2;
+            if (u == t) {
+                front.add(new ParetoPath(c1, c2, labels.path(label)));
+                continue;
+            }
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.head(e);
+                double n2 = c2 + second.cost(attrs, penalties2, e);
+                if (n2 < minSecond[v] && n2 < minSecond[t]) {
+                    double n1 = c1 + first.cost(attrs, penalties1, e);
+                    queue.add(new LabelEntry(labels.add(v, label), n1, n2));
+                }
+            }
+        }
+        return front;
+    }
+
+    /** A path on the Pareto front, with its cost under each profile. */
+    public static class ParetoPath {
+        private final double firstCost;
+        private final double secondCost;
+        private final List<Node> path;
+
+        ParetoPath(double firstCost, double secondCost, List<Node> path) {
+            this.firstCost = firstCost;
+            this.secondCost = secondCost;
+            this.path = path;
+        }
+
+        /** Return the cost of the path under the first profile. */
+        public double getFirstCost() {
+            return firstCost;
+        }
+
+        /** Return the cost of the path under the second profile. */
+        public double getSecondCost() {
+            return secondCost;
+        }
+
+        /** Return the nodes along the path, origin first. */
+        public List<Node> getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return firstCost + " " + secondCost + " " + path;
+        }
+    }
+
+    /* Growable columns of Pareto search labels. */
+    private class LabelStore {
+        int[] node = new int[16];
+        int[] parent = new int[16];
+        int size;
+
+        /* Add a label and return its number. Its costs are kept only in its
+         * queue entry. */
+        int add(int v, int parentLabel) {
+            if (size == node.length) {
+                node = Arrays.copyOf(node, 2 * size);
+                parent = Arrays.copyOf(parent, 2 * size);
+            }
+            node[size] = v;
+            parent[size] = parentLabel;
+            return size++;
+        }
+
+        /* Return the nodes of the path ending with the given label. */
+        List<Node> path(int label) {
+            ArrayList<Node> path = new ArrayList<>();
+            for (int l = label; l >= 0; l = parent[l]) {
+                path.add(graph.getNode(node[l]));
+            }
+            Collections.reverse(path);
+            return Collections.unmodifiableList(path);
+        }
+    }
+
+    // Helper class for the Pareto search. Saves a label and its costs
+    private static class LabelEntry {
+        int label;
+        double cost;
+        double secondCost;
+
+        LabelEntry(int label, double cost, double secondCost) {
+            this.label = label;
+            this.cost = cost;
+            this.secondCost = secondCost;
+        }
+    }
+}
@@ -14,6 +14,9 @@ public class Node {
     //  v -> the weight of the edge
      private HashMap<Node,Double> neighbors;
 
+    // position of this node in the Graph that created it, or -1
+    private int index = -1;
+
     /** Constructor: create node with the given id */
     public Node(String id) {
         this.id = id;
@@ -25,6 +28,18 @@ public class Node {
         return id;
     }
 
+    /** Return the position of this node in the Graph that created it: nodes
+     * are numbered from 0 in the order getNode created them. Return -1 if the
+     * node was not created by a Graph. */
+    int getIndex() {
+        return index;
+    }
+
+    /** Set the position of this node in its Graph to i. */
+    void setIndex(int i) {
+        index = i;
+    }
+
     /** Return the map that associates each neighbor with the weight of the
      * edge to that neighbor. */
     public HashMap<Node,Double> getNeighbors() {
@@ -0,0 +1,258 @@
+package graph;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/** A customizable route planning overlay on a partitioned CompiledGraph.
+ * Within each cell, the entry nodes (heads of edges coming from other cells)
+ * and exit nodes (tails of edges leaving to other cells) are connected by a
+ * clique whose arc lengths are the shortest distances inside the cell.
+ * The overlay has a single level: Partitioner finds the cells by multilevel
+ * contraction, but only the final cells get cliques, and there are no
+ * cliques between cells of coarser levels.
+ * Queries run Dijkstra's algorithm on the original edges of the origin and
+ * destination cells, and on the cliques and boundary edges everywhere else,
+ * so they settle far fewer nodes than a search of the whole graph. Lengths
+ * agree with ShortestPaths up to rounding in the last bits.
+ *
+ * Changing an edge weight with setWeight only marks the cell containing the
+ * edge as out of date; customize() recomputes the cliques of out-of-date cells
+ * and is called automatically before the next query. Weights of boundary
+ * edges are used directly and never require recomputation.
+ *
+ * An OverlayGraph reuses internal arrays between queries, so one instance
+ * must not be queried from several threads at once.
+ * Sample usage:
+ *   CompiledGraph cg = new CompiledGraph(g);
+ *   OverlayGraph overlay = new OverlayGraph(Partitioner.partition(cg, 64));
+ *   double abLength = overlay.shortestPathLength(g.getNode("A"), g.getNode("B"));
+ *   */
+public class OverlayGraph {
+
+    private final CompiledGraph graph;
+    private final Partition partition;
+
+    // entries[c] and exits[c] list the entry and exit nodes of cell c
+    private final int[][] entries;
+    private final int[][] exits;
+    // position of a node in its cell's entry/exit list, or -1 if it is not one
+    private final int[] entryPos;
+    private final int[] exitPos;
+
+    // clique[c][i * exits[c].length + j] is the distance inside cell c from
+    // entry i to exit j
+    private final double[][] clique;
+    private final boolean[] dirty; // cells whose cliques are out of date
+    private int numDirty;
+
+    // searches on the overlay and inside single cells, reused between queries
+    private final DijkstraSearch search;
+    private final DijkstraSearch cellSearch;
+    private final boolean[] viaClique; // whether the arc into v is a clique arc
+
+    /** Constructor: build the overlay for the given partition and compute
+     * all of its cliques. */
+    public OverlayGraph(Partition partition) {
+        this.partition = partition;
+        graph = partition.getGraph();
+        int n = graph.numNodes();
+        int numCells = partition.numCells();
+
+        entryPos = new int[n];
+        exitPos = new int[n];
+        Arrays.fill(entryPos, -1);
+        Arrays.fill(exitPos, -1);
+        int[] numEntries = new int[numCells];
+        int[] numExits = new int[numCells];
+        for (int u = 0; u < n; u++) {
+            int cu = partition.cellOf(u);
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.head(e);
+                int cv = partition.cellOf(v);
+                if (cu != cv) {
+                    if (exitPos[u] < 0) {
+                        exitPos[u] = numExits[cu]++;
+                    }
+                    if (entryPos[v] < 0) {
+                        entryPos[v] = numEntries[cv]++;
+                    }
+                }
+            }
+        }
+        entries = new int[numCells][];
+        exits = new int[numCells][];
+        clique = new double[numCells][];
+        for (int c = 0; c < numCells; c++) {
+            entries[c] = new int[numEntries[c]];
+            exits[c] = new int[numExits[c]];
+            clique[c] = new double[numEntries[c] * numExits[c]];
+        }
+        for (int v = 0; v < n; v++) {
+            int c = partition.cellOf(v);
+            if (entryPos[v] >= 0) {
+                entries[c][entryPos[v]] = v;
+            }
+            if (exitPos[v] >= 0) {
+                exits[c][exitPos[v]] = v;
+            }
+        }
+
+        search = new DijkstraSearch(n);
+        cellSearch = new DijkstraSearch(n);
+        viaClique = new boolean[n];
+
+        dirty = new boolean[numCells];
+        Arrays.fill(dirty, true);
+        numDirty = numCells;
+        customize();
+    }
+
+    /** Return the partition this overlay is built on. */
+    public Partition getPartition() {
+        return partition;
+    }
+
+    /** Return the total number of clique arcs over all cells. */
+    public int numCliqueArcs() {
+        int count = 0;
+        for (double[] c : clique) {
+            count += c.length;
+        }
+        return count;
+    }
+
+    /** Set the weight of the edge from orig to dest to w, marking the cell
+     * containing it as out of date if it lies inside a cell. Also updates the
+     * CompiledGraph, but not the Graph it was compiled from.
+     * Precondition: an edge from orig to dest exists and w >= 0. */
+    public void setWeight(Node orig, Node dest, double w) {
+        int u = graph.indexOf(orig);
+        int v = graph.indexOf(dest);
+        int e = (u < 0 || v < 0) ? -1 : graph.findEdge(u, v);
+        if (e < 0) {
+            throw new IllegalArgumentException(
+                    "No edge from " + orig + " to " + dest);
+        }
+        graph.setWeight(e, w);
+        int c = partition.cellOf(u);
+        if (c == partition.cellOf(v) && !dirty[c]) {
+            dirty[c] = true;
+            numDirty++;
+        }
+    }
+
+    /** Recompute the cliques of all out-of-date cells and return how many
+     * cells were recomputed. */
+    public final int customize() {
+        int recomputed = 0;
+        for (int c = 0; c < dirty.length && numDirty > 0; c++) {
+            if (dirty[c]) {
+                customizeCell(c);
+                dirty[c] = false;
+                numDirty--;
+                recomputed++;
+            }
+        }
+        return recomputed;
+    }
+
+    /* Recompute the clique of cell c with one search inside the cell from
+     * each of its entry nodes. */
+    private void customizeCell(int c) {
+        int[] cellExits = exits[c];
+        for (int i = 0; i < entries[c].length; i++) {
+            searchCell(c, entries[c][i], -1);
+            for (int j = 0; j < cellExits.length; j++) {
+                clique[c][i * cellExits.length + j] = cellSearch.distance(cellExits[j]);
+            }
+        }
+    }
+
+    /** Returns the length of the shortest path from origin to destination.
+     * If no path exists, return Double.POSITIVE_INFINITY.
+     * Precondition: origin and destination are nodes in the graph. */
+    public double shortestPathLength(Node origin, Node destination) {
+        int t = graph.indexOf(destination);
+        searchOverlay(graph.indexOf(origin), t);
+        return search.distance(t);
+    }
+
+    /** Returns a LinkedList of the nodes along the shortest path from origin
+     * to destination. This path includes the origin and destination. If origin
+     * and destination are the same node, it is included only once.
+     * If no path to it exists, return null.
+     * Precondition: origin and destination are nodes in the graph. */
+    public LinkedList<Node> shortestPath(Node origin, Node destination) {
+        int t = graph.indexOf(destination);
+        searchOverlay(graph.indexOf(origin), t);
+        if (search.distance(t) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        LinkedList<Node> path = new LinkedList<>();
+        int current = t;
+        path.addFirst(graph.getNode(current));
+        while (search.parent(current) >= 0) {
+            int prev = search.parent(current);
+            if (viaClique[current]) {
+                // unpack the clique arc by searching inside its cell
+                searchCell(partition.cellOf(current), prev, current);
+                for (int v = cellSearch.parent(current); v != prev; v = cellSearch.parent(v)) {
+                    path.addFirst(graph.getNode(v));
+                }
+            }
+            path.addFirst(graph.getNode(prev));
+            current = prev;
+        }
+        return path;
+    }
+
+    /* Run Dijkstra's algorithm on the overlay from s until t is settled,
+     * filling in search and viaClique. */
+    private void searchOverlay(int s, int t) {
+        customize();
+        int sourceCell = partition.cellOf(s);
+        int targetCell = partition.cellOf(t);
+        search.start(s);
+        for (int u = search.next(); u >= 0 && u != t; u = search.next()) {
+            double du = search.distance(u);
+            int c = partition.cellOf(u);
+            boolean local = c == sourceCell || c == targetCell;
+            if (!local && entryPos[u] >= 0) {
+                // cross the cell along its clique
+                int[] cellExits = exits[c];
+                int row = entryPos[u] * cellExits.length;
+                for (int j = 0; j < cellExits.length; j++) {
+                    if (search.relax(u, cellExits[j], du + clique[c][row + j])) {
+                        viaClique[cellExits[j]] = true;
+                    }
+                }
+            }
+            if (local || exitPos[u] >= 0) {
+                for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                    int v = graph.head(e);
+                    if (!local && partition.cellOf(v) == c) {
+                        continue;
+                    }
+                    if (search.relax(u, v, du + graph.weight(e))) {
+                        viaClique[v] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /* Run Dijkstra's algorithm in cellSearch from s using only edges inside
+     * cell c, until t is settled or, if t is -1, until the cell is
+     * exhausted. */
+    private void searchCell(int c, int s, int t) {
+        cellSearch.start(s);
+        for (int u = cellSearch.next(); u >= 0 && u != t; u = cellSearch.next()) {
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.head(e);
+                if (partition.cellOf(v) == c) {
+                    cellSearch.relax(u, v, cellSearch.distance(u) + graph.weight(e));
+                }
+            }
+        }
+    }
+}
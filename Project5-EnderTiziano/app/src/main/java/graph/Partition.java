@@ -0,0 +1,94 @@
+package graph;
+
+/** A partition of the nodes of a CompiledGraph into cells. Cells are numbered
+ * 0 .. numCells()-1 and every node belongs to exactly one cell. An edge whose
+ * endpoints lie in different cells is a boundary edge. See Partitioner for
+ * how partitions are computed. */
+public class Partition {
+
+    private final CompiledGraph graph;
+    private final int[] cellOf; // cellOf[v] is the cell containing node v
+
+    // the nodes of cell c are cellNodes[cellStart[c]] .. cellNodes[cellStart[c+1]-1]
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    /** Constructor: create the partition of g that puts node v in cell
+     * cellOf[v]. Precondition: the cell numbers are 0 .. numCells-1 and no
+     * cell is empty. */
+    public Partition(CompiledGraph g, int[] cellOf, int numCells) {
+        this.graph = g;
+        this.cellOf = cellOf;
+        cellStart = new int[numCells + 1];
+        for (int v = 0; v < cellOf.length; v++) {
+            cellStart[cellOf[v] + 1]++;
+        }
+        for (int c = 0; c < numCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = cellStart.clone();
+        cellNodes = new int[cellOf.length];
+        for (int v = 0; v < cellOf.length; v++) {
+            cellNodes[next[cellOf[v]]++] = v;
+        }
+    }
+
+    /** Return the graph this partitions. */
+    public CompiledGraph getGraph() {
+        return graph;
+    }
+
+    /** Return the number of cells. */
+    public int numCells() {
+        return cellStart.length - 1;
+    }
+
+    /** Return the cell containing node v. */
+    public int cellOf(int v) {
+        return cellOf[v];
+    }
+
+    /** Return the number of nodes in cell c. */
+    public int cellSize(int c) {
+        return cellStart[c + 1] - cellStart[c];
+    }
+
+    /** Return the i'th node of cell c, for 0 <= i < cellSize(c). */
+    public int cellNode(int c, int i) {
+        return cellNodes[cellStart[c] + i];
+    }
+
+    /** Return the size of the largest cell. */
+    public int maxCellSize() {
+        int max = 0;
+        for (int c = 0; c < numCells(); c++) {
+            max = Math.max(max, cellSize(c));
+        }
+        return max;
+    }
+
+    /** Return the number of edges whose endpoints lie in different cells. */
+    public int numBoundaryEdges() {
+        int count = 0;
+        for (int u = 0; u < graph.numNodes(); u++) {
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                if (cellOf[graph.head(e)] != cellOf[u]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Print a report of the partition's statistics, including number of
+     * cells, cell sizes, and number of boundary edges. */
+    public void report() {
+        int numCells = numCells();
+        int boundary = numBoundaryEdges();
+        System.out.println("Partition has: ");
+        System.out.println(numCells + " cells.");
+        System.out.println("Max cell size " + maxCellSize());
+        System.out.println("Average cell size " + ((double) graph.numNodes()) / ((double) numCells));
+        System.out.println(boundary + " of " + graph.numEdges() + " edges on cell boundaries.");
+    }
+}
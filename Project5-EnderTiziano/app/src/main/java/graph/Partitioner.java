@@ -0,0 +1,269 @@
+package graph;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Computes balanced partitions of a CompiledGraph using multilevel size-
+ * constrained label propagation. Every node starts in its own cell and
+ * repeatedly joins the neighboring cell it shares the most edges with, as long
+ * as that cell stays within the size bound. The resulting cells are then
+ * contracted into single weighted nodes and the process repeats on the
+ * coarser graph until no more cells merge. Finally, cells that are still
+ * small (such as isolated nodes) are packed together so that cell sizes are
+ * balanced. Edge directions and weights are ignored: two nodes are as
+ * strongly connected as the number of edges between them.
+ * Sample usage:
+ *   CompiledGraph cg = new CompiledGraph(g);
+ *   Partition p = Partitioner.partition(cg, 64);
+ *   */
+public class Partitioner {
+
+    private static final int ROUNDS = 10; // label propagation rounds per level
+    private static final int MAX_LEVELS = 16; // maximum number of contractions
+    private static final long SEED = 2025; // fixed so partitions are reproducible
+
+    /** Return a partition of g into cells of at most maxCellSize nodes.
+     * Precondition: maxCellSize >= 1. */
+    public static Partition partition(CompiledGraph g, int maxCellSize) {
+        if (maxCellSize < 1) {
+            throw new IllegalArgumentException(
+                    "Cell size must be positive: " + maxCellSize);
+        }
+        int n = g.numNodes();
+        int[] cellOf = new int[n];
+        for (int v = 0; v < n; v++) {
+            cellOf[v] = v;
+        }
+
+        Level level = Level.of(g);
+        Random random = new Random(SEED);
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            int[] label = level.propagate(maxCellSize, random);
+            int numClusters = compact(label);
+            if (numClusters == level.size()) {
+                break;
+            }
+            for (int v = 0; v < n; v++) {
+                cellOf[v] = label[cellOf[v]];
+            }
+            level = level.contract(label, numClusters);
+        }
+
+        int numCells = pack(cellOf, maxCellSize);
+        return new Partition(g, cellOf, numCells);
+    }
+
+    /* Renumber the labels in place so they are 0 .. k-1 in order of first
+     * appearance, and return k. */
+    private static int compact(int[] label) {
+        int[] id = new int[label.length];
+        Arrays.fill(id, -1);
+        int k = 0;
+        for (int v = 0; v < label.length; v++) {
+            if (id[label[v]] < 0) {
+                id[label[v]] = k++;
+            }
+            label[v] = id[label[v]];
+        }
+        return k;
+    }
+
+    /* Pack cells smaller than half of maxCellSize together, first fit, without
+     * exceeding maxCellSize. Renumber cellOf in place and return the number of
+     * cells. */
+    private static int pack(int[] cellOf, int maxCellSize) {
+        int numCells = compact(cellOf);
+        int[] size = new int[numCells];
+        for (int c : cellOf) {
+            size[c]++;
+        }
+        int[] bin = new int[numCells];
+        int numBins = 0;
+        int openBin = -1;
+        int openLoad = 0;
+        for (int c = 0; c < numCells; c++) {
+            if (2 * size[c] >= maxCellSize) {
+                bin[c] = numBins++;
+            } else {
+                if (openBin < 0 || openLoad + size[c] > maxCellSize) {
+                    openBin = numBins++;
+                    openLoad = 0;
+                }
+                bin[c] = openBin;
+                openLoad += size[c];
+            }
+        }
+        for (int v = 0; v < cellOf.length; v++) {
+            cellOf[v] = bin[cellOf[v]];
+        }
+        return numBins;
+    }
+
+    /** One level of the multilevel hierarchy: an undirected graph whose nodes
+     * carry the number of original nodes they stand for and whose edges carry
+     * the number of original edges they stand for. Adjacency is stored in both
+     * directions. */
+    private static class Level {
+        int[] nodeWeight;
+        int[] adjStart; // neighbors of v are adj[adjStart[v]] .. adj[adjStart[v+1]-1]
+        int[] adj;
+        int[] adjWeight;
+
+        int size() {
+            return nodeWeight.length;
+        }
+
+        /* Build the finest level from g, ignoring self loops. */
+        static Level of(CompiledGraph g) {
+            int n = g.numNodes();
+            Level l = new Level();
+            l.nodeWeight = new int[n];
+            Arrays.fill(l.nodeWeight, 1);
+            l.adjStart = new int[n + 1];
+            for (int u = 0; u < n; u++) {
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.head(e);
+                    if (u != v) {
+                        l.adjStart[u + 1]++;
+                        l.adjStart[v + 1]++;
+                    }
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                l.adjStart[v + 1] += l.adjStart[v];
+            }
+            int[] next = l.adjStart.clone();
+            l.adj = new int[l.adjStart[n]];
+            l.adjWeight = new int[l.adjStart[n]];
+            for (int u = 0; u < n; u++) {
+                for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                    int v = g.head(e);
+                    if (u != v) {
+                        l.adj[next[u]] = v;
+                        l.adjWeight[next[u]++] = 1;
+                        l.adj[next[v]] = u;
+                        l.adjWeight[next[v]++] = 1;
+                    }
+                }
+            }
+            return l;
+        }
+
+        /* Run size-constrained label propagation and return the label of
+         * each node. No label's total node weight exceeds maxSize unless a
+         * single node already does. */
+        int[] propagate(int maxSize, Random random) {
+            int n = size();
+            int[] label = new int[n];
+            int[] labelSize = new int[n];
+            int[] order = new int[n];
+            for (int v = 0; v < n; v++) {
+                label[v] = v;
+                labelSize[v] = nodeWeight[v];
+                order[v] = v;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+
+            int[] score = new int[n]; // connection strength to each label
+            int[] touched = new int[n]; // labels with nonzero score
+            for (int round = 0; round < ROUNDS; round++) {
+                int moved = 0;
+                for (int v : order) {
+                    int numTouched = 0;
+                    for (int i = adjStart[v]; i < adjStart[v + 1]; i++) {
+                        int l = label[adj[i]];
+                        if (score[l] == 0) {
+                            touched[numTouched++] = l;
+                        }
+                        score[l] += adjWeight[i];
+                    }
+
+                    int current = label[v];
+                    int best = current;
+                    for (int i = 0; i < numTouched; i++) {
+                        int l = touched[i];
+                        if (l != current && labelSize[l] + nodeWeight[v] <= maxSize
+                                && (score[l] > score[best]
+                                    || (score[l] == score[best] && best != current
+                                        && labelSize[l] < labelSize[best]))) {
+                            best = l;
+                        }
+                    }
+                    for (int i = 0; i < numTouched; i++) {
+                        score[touched[i]] = 0;
+                    }
+
+                    if (best != current) {
+                        labelSize[current] -= nodeWeight[v];
+                        labelSize[best] += nodeWeight[v];
+                        label[v] = best;
+                        moved++;
+                    }
+                }
+                if (moved == 0) {
+                    break;
+                }
+            }
+            return label;
+        }
+
+        /* Return the coarser level obtained by merging each group of nodes
+         * with the same cluster number, cluster[v] in 0 .. numClusters-1. */
+        Level contract(int[] cluster, int numClusters) {
+            int n = size();
+            Level c = new Level();
+            c.nodeWeight = new int[numClusters];
+            int[] memberStart = new int[numClusters + 1];
+            for (int v = 0; v < n; v++) {
+                c.nodeWeight[cluster[v]] += nodeWeight[v];
+                memberStart[cluster[v] + 1]++;
+            }
+            for (int k = 0; k < numClusters; k++) {
+                memberStart[k + 1] += memberStart[k];
+            }
+            int[] next = memberStart.clone();
+            int[] members = new int[n];
+            for (int v = 0; v < n; v++) {
+                members[next[cluster[v]]++] = v;
+            }
+
+            // merge the adjacency of each cluster's members, dropping edges
+            // inside the cluster
+            int[] weightTo = new int[numClusters];
+            int[] touched = new int[numClusters];
+            int[] adjBuf = new int[adj.length];
+            int[] weightBuf = new int[adj.length];
+            c.adjStart = new int[numClusters + 1];
+            int size = 0;
+            for (int k = 0; k < numClusters; k++) {
+                int numTouched = 0;
+                for (int m = memberStart[k]; m < memberStart[k + 1]; m++) {
+                    int v = members[m];
+                    for (int i = adjStart[v]; i < adjStart[v + 1]; i++) {
+                        int other = cluster[adj[i]];
+                        if (other == k) {
+                            continue;
+                        }
+                        if (weightTo[other] == 0) {
+                            touched[numTouched++] = other;
+                        }
+                        weightTo[other] += adjWeight[i];
+                    }
+                }
+                for (int i = 0; i < numTouched; i++) {
+                    adjBuf[size] = touched[i];
+                    weightBuf[size++] = weightTo[touched[i]];
+                    weightTo[touched[i]] = 0;
+                }
+                c.adjStart[k + 1] = size;
+            }
+            c.adj = Arrays.copyOf(adjBuf, size);
+            c.adjWeight = Arrays.copyOf(weightBuf, size);
+            return c;
+        }
+    }
+}
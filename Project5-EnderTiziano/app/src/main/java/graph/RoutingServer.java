@@ -0,0 +1,459 @@
+package graph;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** A lightweight HTTP server answering routing queries on a CompiledGraph,
+ * built on the JDK's HttpServer with one virtual thread per request. All
+ * endpoints take GET requests and return JSON:
+ *   /route?from=A&to=B          the shortest path and its length
+ *   /distance?from=A&to=B       the length of the shortest path only
+ *   /matrix?from=A,B&to=C,D     lengths from every origin to every destination
+ *   /isochrone?from=A&limit=5   all nodes within distance limit of A
+ *   /stats                      request counts and latency percentiles
+ * Unreachable destinations have length null.
+ *
+ * Concurrent identical requests are coalesced: only the first is computed and
+ * the others wait for its response. Beyond that, all concurrent requests with
+ * the same origin, whatever their endpoint, share a single shortest paths
+ * search. Latency percentiles cover the most recent requests.
+ * Sample usage:
+ *   RoutingServer server = new RoutingServer(new CompiledGraph(g));
+ *   server.start(8080);
+ *   ...
+ *   server.stop();
+ *   */
+public class RoutingServer {
+
+    private static final int LATENCY_WINDOW = 8192; // requests kept for percentiles
+
+    private final CompiledGraph graph;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // responses and searches in progress, keyed by request and by origin
+    private final ConcurrentHashMap<String,CompletableFuture<Response>> inflightRequests;
+    private final ConcurrentHashMap<Integer,CompletableFuture<ShortestPathTree>> inflightSearches;
+
+    private final AtomicLong numCoalesced = new AtomicLong(); // requests answered by another
+    private final AtomicLong numSearches = new AtomicLong();
+    private final AtomicLong numSharedSearches = new AtomicLong(); // searches joined
+    // number of requests answered, and the latencies in nanoseconds of the
+    // last LATENCY_WINDOW of them; both guarded by this server's lock
+    private long numRequests;
+    private final long[] latencies = new long[LATENCY_WINDOW];
+
+    /** Constructor: create a server for g. It does not listen until start is
+     * called. */
+    public RoutingServer(CompiledGraph g) {
+        graph = g;
+        inflightRequests = new ConcurrentHashMap<>();
+        inflightSearches = new ConcurrentHashMap<>();
+    }
+
+    /** Start listening on the given port, or on a free port if port is 0. */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /** Return the port the server listens on. Precondition: start has been
+     * called. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stop the server, waiting at most a second for open requests. */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /* Answer one HTTP request and record its latency. */
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (!exchange.getRequestMethod().equals("GET")) {
+                response = new Response(405, error("only GET is supported"));
+            } else if (path.equals("/stats")) {
+                response = new Response(200, stats());
+            } else if (!isRoutingEndpoint(path)) {
+                response = new Response(404, error("unknown endpoint " + path));
+            } else {
+                HashMap<String,String> params = parseQuery(query);
+                response = params == null ? new Response(400, error("malformed query"))
+                        : coalesce(path + "?" + query, () -> route(path, params));
+            }
+        } catch (RuntimeException e) {
+            response = new Response(500, error(String.valueOf(e.getMessage())));
+        }
+
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        recordLatency(System.nanoTime() - start);
+    }
+
+    /* Count one more request and add its latency to the window, in one step
+     * so stats never sees the count without the latency. */
+    private synchronized void recordLatency(long nanos) {
+        latencies[(int) (numRequests % LATENCY_WINDOW)] = nanos;
+        numRequests++;
+    }
+
+    /* Return whether path is an endpoint answered by route. */
+    private static boolean isRoutingEndpoint(String path) {
+        return path.equals("/route") || path.equals("/distance")
+                || path.equals("/matrix") || path.equals("/isochrone");
+    }
+
+    /* Return the response computed by compute, unless an identical request is
+     * already in progress, in which case wait for and return its response. */
+    private Response coalesce(String key, Supplier<Response> compute) {
+        CompletableFuture<Response> mine = new CompletableFuture<>();
+        CompletableFuture<Response> existing = inflightRequests.putIfAbsent(key, mine);
+        if (existing != null) {
+            numCoalesced.incrementAndGet();
+            return existing.join();
+        }
+        try {
+            Response response = compute.get();
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightRequests.remove(key, mine);
+        }
+    }
+
+    /* Return the shortest path tree from origin, joining a search from the
+     * same origin if one is in progress. */
+    private ShortestPathTree search(int origin) {
+        CompletableFuture<ShortestPathTree> mine = new CompletableFuture<>();
+        CompletableFuture<ShortestPathTree> existing = inflightSearches.putIfAbsent(origin, mine);
+        if (existing != null) {
+            numSharedSearches.incrementAndGet();
+            return existing.join();
+        }
+        try {
+            numSearches.incrementAndGet();
+            ShortestPathTree tree = computeTree(origin);
+            mine.complete(tree);
+            return tree;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflightSearches.remove(origin, mine);
+        }
+    }
+
+    /* Return the shortest path tree from origin, computed afresh. Tests
+     * override this to hold searches until concurrent requests pile up. */
+    ShortestPathTree computeTree(int origin) {
+        ShortestPaths sp = new ShortestPaths(graph);
+        sp.compute(graph.getNode(origin));
+        return sp.getTree();
+    }
+
+    /* Dispatch a routing request to its endpoint. Precondition:
+     * isRoutingEndpoint(path). */
+    private Response route(String path, HashMap<String,String> params) {
+        if (!params.containsKey("from")) {
+            return new Response(400, error("missing parameter from"));
+        }
+        String[] from = params.get("from").split(",");
+        int[] origins = indicesOf(from);
+        if (origins == null) {
+            return new Response(404, error("unknown node in " + params.get("from")));
+        }
+
+        if (path.equals("/isochrone")) {
+            double limit;
+            try {
+                limit = Double.parseDouble(params.getOrDefault("limit", ""));
+            } catch (NumberFormatException e) {
+                limit = Double.NaN;
+            }
+            if (!Double.isFinite(limit) || limit < 0) {
+                return new Response(400, error("missing or invalid parameter limit"));
+            }
+            return new Response(200, isochrone(origins[0], limit));
+        }
+
+        if (!params.containsKey("to")) {
+            return new Response(400, error("missing parameter to"));
+        }
+        String[] to = params.get("to").split(",");
+        int[] dests = indicesOf(to);
+        if (dests == null) {
+            return new Response(404, error("unknown node in " + params.get("to")));
+        }
+        if (path.equals("/route")) {
+            return new Response(200, route(origins[0], dests[0]));
+        } else if (path.equals("/distance")) {
+            return new Response(200, "{\"origin\":" + BatchQueryRunner.quote(from[0])
+                    + ",\"dest\":" + BatchQueryRunner.quote(to[0])
+                    + ",\"length\":" + length(search(origins[0]), dests[0]) + "}");
+        }
+        return new Response(200, matrix(from, origins, to, dests));
+    }
+
+    private String route(int origin, int dest) {
+        ShortestPathTree tree = search(origin);
+        int[] path = tree.pathIndices(dest);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"origin\":").append(BatchQueryRunner.quote(graph.getNode(origin).getId()))
+            .append(",\"dest\":").append(BatchQueryRunner.quote(graph.getNode(dest).getId()))
+            .append(",\"length\":").append(length(tree, dest))
+            .append(",\"path\":");
+        if (path == null) {
+            json.append("null");
+        } else {
+            json.append('[');
+            for (int i = 0; i < path.length; i++) {
+                json.append(i > 0 ? "," : "")
+                    .append(BatchQueryRunner.quote(graph.getNode(path[i]).getId()));
+            }
+            json.append(']');
+        }
+        return json.append('}').toString();
+    }
+
+    private String matrix(String[] from, int[] origins, String[] to, int[] dests) {
+        StringBuilder json = new StringBuilder("{\"sources\":");
+        appendIds(json, from);
+        json.append(",\"targets\":");
+        appendIds(json, to);
+        json.append(",\"lengths\":[");
+        for (int i = 0; i < origins.length; i++) {
+            ShortestPathTree tree = search(origins[i]);
+            json.append(i > 0 ? ",[" : "[");
+            for (int j = 0; j < dests.length; j++) {
+                json.append(j > 0 ? "," : "").append(length(tree, dests[j]));
+            }
+            json.append(']');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String isochrone(int origin, double limit) {
+        ShortestPathTree tree = search(origin);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"origin\":").append(BatchQueryRunner.quote(graph.getNode(origin).getId()))
+            .append(",\"limit\":").append(limit).append(",\"nodes\":{");
+        boolean first = true;
+        for (int v = 0; v < graph.numNodes(); v++) {
+            double d = tree.distance(v);
+            if (d != Double.POSITIVE_INFINITY && d <= limit) {
+                json.append(first ? "" : ",")
+                    .append(BatchQueryRunner.quote(graph.getNode(v).getId()))
+                    .append(':').append(d);
+                first = false;
+            }
+        }
+        return json.append("}}").toString();
+    }
+
+    /* Return a JSON object of the request counters and latency percentiles
+     * in milliseconds. */
+    private String stats() {
+        long n;
+        long[] recent;
+        synchronized (this) {
+            n = numRequests;
+            recent = Arrays.copyOf(latencies, (int) Math.min(n, LATENCY_WINDOW));
+        }
+        Arrays.sort(recent);
+        return "{\"requests\":" + n
+                + ",\"coalesced\":" + numCoalesced.get()
+                + ",\"searches\":" + numSearches.get()
+                + ",\"sharedSearches\":" + numSharedSearches.get()
+                + ",\"p50\":" + percentile(recent, 0.50)
+                + ",\"p90\":" + percentile(recent, 0.90)
+                + ",\"p99\":" + percentile(recent, 0.99)
+                + ",\"max\":" + percentile(recent, 1.0) + "}";
+    }
+
+    /* Return the p'th percentile of the sorted nanosecond latencies in
+     * milliseconds, or 0 if there are none. */
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int i = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+
+    /* Return the node indices of ids, or null if one is unknown. */
+    private int[] indicesOf(String[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indices[i] = graph.indexOf(ids[i]);
+            if (indices[i] < 0) {
+                return null;
+            }
+        }
+        return indices;
+    }
+
+    /* Return the distance of v in tree as JSON. */
+    private static String length(ShortestPathTree tree, int v) {
+        double d = tree.distance(v);
+        return d == Double.POSITIVE_INFINITY ? "null" : Double.toString(d);
+    }
+
+    private static void appendIds(StringBuilder json, String[] ids) {
+        json.append('[');
+        for (int i = 0; i < ids.length; i++) {
+            json.append(i > 0 ? "," : "").append(BatchQueryRunner.quote(ids[i]));
+        }
+        json.append(']');
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + BatchQueryRunner.quote(message) + "}";
+    }
+
+    /* Parse a raw URL query string into a map from names to decoded values,
+     * or return null if it contains a malformed % escape. */
+    static HashMap<String,String> parseQuery(String query) {
+        HashMap<String,String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        try {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return params;
+    }
+
+    // An HTTP status code with its JSON body
+    private static class Response {
+        int status;
+        String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /* Send numRequests random /route requests to a server on localhost with
+     * the given number of concurrent clients, and print the throughput and
+     * the server's stats. */
+    private static void loadTest(RoutingServer server, int numRequests, int concurrency)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        String base = "http://localhost:" + server.getPort();
+        int n = server.graph.numNodes();
+        AtomicLong next = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        Thread[] clientThreads = new Thread[concurrency];
+        long start = System.nanoTime();
+        for (int c = 0; c < concurrency; c++) {
+            Random random = new Random(c);
+            clientThreads[c] = Thread.ofVirtual().start(() -> {
+                while (next.getAndIncrement() < numRequests) {
+                    // few origins, so that requests overlap
+                    String from = server.graph.getNode(random.nextInt(Math.min(n, 16))).getId();
+                    String to = server.graph.getNode(random.nextInt(n)).getId();
+                    URI uri = URI.create(base + "/route?from="
+                            + URLEncoder.encode(from, StandardCharsets.UTF_8) + "&to=" + URLEncoder.encode(to, StandardCharsets.UTF_8));
+                    try {
+                        HttpResponse<String> response = client.send(
+                                HttpRequest.newBuilder(uri).build(),
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread t : clientThreads) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d requests in %.3f s (%.1f requests/second), %d failed%n",
+                numRequests, seconds, numRequests / seconds, failures.get());
+        System.out.println(server.stats());
+    }
+
+    /** Main method: serve routing queries on a graph until killed, or run a
+     * local load test against an in-process server.
+     * Usage: RoutingServer FILETYPE FILENAME [PORT]
+     *    or: RoutingServer FILETYPE FILENAME --load-test [REQUESTS] [CONCURRENCY] */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Graph graph;
+        try {
+            graph = ShortestPaths.parseGraph(args[0], args[1]);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open file " + args[1]);
+            return;
+        }
+        graph.report();
+        // without TCP_NODELAY, small responses on kept-alive connections wait
+        // for delayed acknowledgements, adding tens of milliseconds each. The
+        // setting is JVM-wide and read when the first server is created, so
+        // it is made here rather than in start
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        RoutingServer server = new RoutingServer(new CompiledGraph(graph));
+
+        if (args.length > 2 && args[2].equals("--load-test")) {
+            int numRequests = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+            int concurrency = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+            server.start(0);
+            loadTest(server, numRequests, concurrency);
+            server.stop();
+            return;
+        }
+
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 8080;
+        server.start(port);
+        System.out.println("Listening on port " + server.getPort());
+    }
+}
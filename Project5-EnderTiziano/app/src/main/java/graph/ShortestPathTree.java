@@ -0,0 +1,178 @@
+package graph;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.io.IOException;
+import java.io.Writer;
+
+/** The result of a single-source shortest paths computation, stored as
+ * primitive arrays. Node indices run from 0 to numNodes() - 1; the node with
+ * index i has distance(i) its distance from the origin and parent(i) the index
+ * of the node before it on its shortest path (-1 for the origin and for
+ * unreached nodes). Paths are reconstructed lazily from the parent array,
+ * without allocating one object per node.
+ * Sample usage:
+ *   ShortestPaths sp = new ShortestPaths();
+ *   sp.compute(a);
+ *   ShortestPathTree tree = sp.getTree();
+ *   List<Node> abPath = tree.path(b);
+ *   tree.write(new BufferedWriter(new FileWriter("tree.csv")));
+ *   */
+public class ShortestPathTree {
+
+    private final Node[] nodes; // maps indices to nodes
+    private final Map<Node,Integer> index; // maps nodes to indices, or null
+    private final double[] distance; // distance of each index from the origin
+    private final int[] parent; // previous index on each shortest path, or -1
+    private final int[] reached; // reached indices in the order first reached
+    private final int origin; // index of the origin
+
+    /** Constructor: wrap the given arrays, which are used directly, not
+     * copied, and have the same length. index maps each node to its position
+     * in nodes, distance and parent; if index is null, that position is the
+     * node's index in its Graph. Indices whose distance is infinite are
+     * unreached, and their entry in nodes may be null. reached lists the
+     * reached indices in the order the search first reached them. */
+    ShortestPathTree(Node[] nodes, Map<Node,Integer> index, double[] distance,
+            int[] parent, int[] reached, int origin) {
+        this.nodes = nodes;
+        this.index = index;
+        this.distance = distance;
+        this.parent = parent;
+        this.reached = reached;
+        this.origin = origin;
+    }
+
+    /** Return the origin of the tree. */
+    public Node getOrigin() {
+        return nodes[origin];
+    }
+
+    /** Return the number of node indices, reached or not. */
+    public int numNodes() {
+        return distance.length;
+    }
+
+    /** Return the index of node v, or -1 if v is not in the tree. */
+    public int indexOf(Node v) {
+        if (index == null) {
+            int i = v.getIndex();
+            return i >= 0 && i < nodes.length && v.equals(nodes[i]) ? i : -1;
+        }
+        Integer i = index.get(v);
+        return i == null ? -1 : i;
+    }
+
+    /** Return the node with index i, or null if the tree does not know it.
+     * Precondition: 0 <= i < numNodes(). */
+    public Node getNode(int i) {
+        return nodes[i];
+    }
+
+    /** Return the distance of the node with index i from the origin, or
+     * Double.POSITIVE_INFINITY if it is unreached.
+     * Precondition: 0 <= i < numNodes(). */
+    public double distance(int i) {
+        return distance[i];
+    }
+
+    /** Return the index of the node before node i on its shortest path, or
+     * -1 if i is the origin or unreached. Precondition: 0 <= i < numNodes(). */
+    public int parent(int i) {
+        return parent[i];
+    }
+
+    /** Return the distance of v from the origin, or Double.POSITIVE_INFINITY
+     * if no path to v exists. */
+    public double distance(Node v) {
+        int i = indexOf(v);
+        return i < 0 ? Double.POSITIVE_INFINITY : distance[i];
+    }
+
+    /** Return the indices of the nodes on the shortest path from the origin
+     * to the node with index i, origin first, or null if i is unreached.
+     * Precondition: 0 <= i < numNodes(). */
+    public int[] pathIndices(int i) {
+        if (distance[i] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int length = 1;
+        for (int v = i; parent[v] >= 0; v = parent[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = i; v >= 0; v = parent[v]) {
+            path[--length] = v;
+        }
+        return path;
+    }
+
+    /** Return a read-only view of the nodes on the shortest path from the
+     * origin to dest, origin first, or null if no path to dest exists. If the
+     * origin and dest are the same node, it is included only once. */
+    public List<Node> path(Node dest) {
+        int i = indexOf(dest);
+        final int[] path = i < 0 ? null : pathIndices(i);
+        if (path == null) {
+            return null;
+        }
+        return new AbstractList<Node>() {
+            @Override
+            public Node get(int k) {
+                return nodes[path[k]];
+            }
+
+            @Override
+            public int size() {
+                return path.length;
+            }
+        };
+    }
+
+    /** Write one line per reached node to out, in index order, in the form
+     *   NODE,PREVIOUS,DISTANCE
+     * where PREVIOUS is empty for the origin. Lines are written as they are
+     * produced, so out should be buffered; to write to a channel, wrap it
+     * with java.nio.channels.Channels.newWriter. */
+    public void write(Writer out) throws IOException {
+        for (int i = 0; i < distance.length; i++) {
+            if (distance[i] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            out.write(nodes[i].getId());
+            out.write(',');
+            if (parent[i] >= 0) {
+                out.write(nodes[parent[i]].getId());
+            }
+            out.write(',');
+            out.write(Double.toString(distance[i]));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /** Return every reached node with its previous node and distance. The
+     * nodes are listed as a HashMap filled in the order they were reached
+     * iterates over them, which is the order ShortestPaths.toString has
+     * always used. */
+    @Override
+    public String toString() {
+        HashMap<Node,Integer> reachedIndex = new HashMap<>();
+        for (int i : reached) {
+            reachedIndex.put(nodes[i], i);
+        }
+        StringBuilder output = new StringBuilder();
+        for (Map.Entry<Node,Integer> entry : reachedIndex.entrySet()) {
+            int i = entry.getValue();
+            if (distance[i] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            output.append("Node: ").append(entry.getKey())
+                  .append(" Previous/Distance: ")
+                  .append(parent[i] < 0 ? null : nodes[parent[i]])
+                  .append(' ').append(distance[i]).append(" || ");
+        }
+        return output.toString();
+    }
+}
@@ -7,10 +7,12 @@
 
 package graph;
 import java.util.Queue;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.io.File;
@@ -26,67 +28,103 @@ import java.io.FileNotFoundException;
  *   Node b = g.getNode("B");
  *   LinkedList<Node> abPath = sp.getShortestPath(b);
  *   double abPathLength = sp.getShortestPathLength(b);
+ * To search a CompiledGraph instead, construct with
+ * new ShortestPaths(compiledGraph). In both cases the full result is available
+ * as a compact ShortestPathTree from getTree(). A search of a Graph uses the
+ * numbers Graph.getNode gives its nodes as array indices, and a search of a
+ * CompiledGraph its node indices, so neither keeps a map or an object per
+ * reached node; the search arrays are reused by later calls to compute.
  *   */
 public class ShortestPaths {
-    // stores auxiliary data associated with each node for the shortest
-    // paths computation:
-    private HashMap<Node,PathData> paths;
+    // the result of the last computation, or null if there was none
+    private ShortestPathTree tree;
 
-    /** Compute the shortest path to all nodes from origin using Dijkstra's
-     * algorithm. Fill in the paths field, which associates each Node with its
-     * PathData record, storing total distance from the source, and the
-     * back pointer to the previous node on the shortest path.
-     * Precondition: origin is a node in the Graph.*/
-    public void compute(Node origin) {
-        paths = new HashMap<>();
+    // if not null, compute runs on the node indices of this graph; otherwise
+    // on the numbers of the nodes in their Graph
+    private CompiledGraph graph;
 
-        // Priority queue orders nodes by current shortest distance from origin
-        // for efficient selection of next node to process
-        PriorityQueue<PQEntry> queue = new PriorityQueue<>(Comparator.comparingDouble(e -> e.distance));
+    // the search of the last computation, kept to reuse its arrays
+    private DijkstraSearch search;
 
-        // Initialize the origin node with distance 0
-        paths.put(origin, new PathData(0.0, null));
-        queue.add(new PQEntry(origin, 0.0));
+    /** Constructor: create a ShortestPaths that searches the Graph containing
+     * the origin passed to compute. */
+    public ShortestPaths() {
+    }
 
-        while (!queue.isEmpty()) {
-            // Extract the node with the smallest distance
-            PQEntry currentEntry = queue.poll();
-            Node currentNode = currentEntry.node;
-            double currentDistance = currentEntry.distance;
+    /** Constructor: create a ShortestPaths that searches g using its node
+     * indices and primitive edge arrays. The nodes passed to compute,
+     * shortestPathLength and shortestPath are looked up in g by id. */
+    public ShortestPaths(CompiledGraph g) {
+        graph = g;
+    }
 
-            // Skip stale entries in queue (we already found a better path)
-            if (paths.get(currentNode).distance < currentDistance) {
-                continue;
-            }
+    /** Compute the shortest path to all nodes from origin using Dijkstra's
+     * algorithm. Fill in the tree field, which stores for each reached node
+     * its total distance from the source and the back pointer to the previous
+     * node on the shortest path.
+     * Precondition: origin is a node in the Graph.*/
+    public void compute(Node origin) {
+        if (graph != null) {
+            computeCompiled(graph.indexOf(origin));
+            return;
+        }
+        int s = origin.getIndex();
+        if (s < 0) {
+            throw new IllegalArgumentException("Node " + origin + " is not in a Graph");
+        }
+        if (search == null) {
+            search = new DijkstraSearch(s + 1);
+        }
+        // nodes[i] is the node with index i once it is reached; the tree
+        // covers the indices up to the largest one reached
+        Node[] nodes = new Node[Math.max(16, s + 1)];
+        nodes[s] = origin;
+        int numNodes = s + 1;
+
+        search.start(s);
+        // Take the unsettled node with the smallest distance until none is left
+        for (int u = search.next(); u >= 0; u = search.next()) {
+            double currentDistance = search.distance(u);
 
             // For each neighbor, try to find shorter path through current node
-            for (Map.Entry<Node, Double> neighborEntry : currentNode.getNeighbors().entrySet()) {
+            for (Map.Entry<Node, Double> neighborEntry : nodes[u].getNeighbors().entrySet()) {
                 Node neighbor = neighborEntry.getKey();
-                double edgeWeight = neighborEntry.getValue();
-                double newDistance = currentDistance + edgeWeight;
-
-                // If this is a shorter path to the neighbor, update the distance and add to the queue
-                if (!paths.containsKey(neighbor) || newDistance < paths.get(neighbor).distance) {
-                    paths.put(neighbor, new PathData(newDistance, currentNode));
-                    queue.add(new PQEntry(neighbor, newDistance));
+                int v = neighbor.getIndex();
+                if (v < 0) {
+                    throw new IllegalArgumentException("Node " + neighbor + " is not in a Graph");
+                }
+                if (search.relax(u, v, currentDistance + neighborEntry.getValue())) {
+                    if (v >= nodes.length) {
+                        nodes = Arrays.copyOf(nodes, Math.max(2 * nodes.length, v + 1));
+                    }
+                    nodes[v] = neighbor;
+                    numNodes = Math.max(numNodes, v + 1);
                 }
             }
         }
-        
-      
+        tree = search.tree(Arrays.copyOf(nodes, numNodes), null, s);
+    }
+
+    /* Dijkstra's algorithm on the node indices of graph. */
+    private void computeCompiled(int origin) {
+        if (search == null) {
+            search = new DijkstraSearch(graph.numNodes());
+        }
+        tree = search.tree(graph, origin, graph::weight);
+    }
+
+    /** Return the result of the last call to compute, or null if compute has
+     * not been called. */
+    public ShortestPathTree getTree() {
+        return tree;
     }
     
     @Override
     public String toString() {
-    	String output = "";
-    	if(paths == null) {
+    	if(tree == null) {
     		return "";
     	}
-    	for(Map.Entry<Node, PathData> entry: paths.entrySet()) {
-    		output += "Node: " +entry.getKey().toString() + " Previous/Distance: " + entry.getValue().toString() + " || ";
-    	}
-    	return output;
-    	
+    	return tree.toString();
     }
 
     /** Returns the length of the shortest path from the origin to destination.
@@ -94,11 +132,7 @@ public class ShortestPaths {
      * Precondition: destination is a node in the graph, and compute(origin)
      * has been called. */
     public double shortestPathLength(Node destination) {
-        // Return infinity if no path exists to destination
-        if (!paths.containsKey(destination)) {
-            return Double.POSITIVE_INFINITY;
-        }
-        return paths.get(destination).distance;
+        return tree.distance(destination);
     }
 
     /** Returns a LinkedList of the nodes along the shortest path from origin
@@ -109,51 +143,11 @@ public class ShortestPaths {
      * has been called. */
     public LinkedList<Node> shortestPath(Node destination) {
         // Return null if no path exists to destination
-        if (!paths.containsKey(destination)) {
+        List<Node> path = tree.path(destination);
+        if (path == null) {
             return null;
         }
-
-        LinkedList<Node> path = new LinkedList<>();
-        Node current = destination;
-
-        // Reconstruct path by following previous pointers from destination to origin
-        while (current != null) {
-            path.addFirst(current);
-            PathData data = paths.get(current);
-            current = data.previous;
-        }
-
-        return path;
-    }
-
-
-    /** Inner class representing data used by Dijkstra's algorithm in the
-     * process of computing shortest paths from a given source node. */
-    class PathData {
-        double distance; // distance of the shortest path from source
-        Node previous; // previous node in the path from the source
-
-        /** constructor: initialize distance and previous node */
-        public PathData(double dist, Node prev) {
-            distance = dist;
-            previous = prev;
-        }
-        
-        @Override
-        public String toString() {
-        	return this.previous + " " + this.distance;
-        }
-        
-    }
-    // Helper class for the compute function. Saves Node and current distance
-    private static class PQEntry {
-        Node node;
-        double distance;
-
-        PQEntry(Node node, double distance) {
-            this.node = node;
-            this.distance = distance;
-        }
+        return new LinkedList<>(path);
     }
 
 
@@ -180,12 +174,29 @@ public class ShortestPaths {
         return parser.parse();
     }
 
+    /** Main method: parse a graph and print shortest paths.
+     * Usage: ShortestPaths FILETYPE FILENAME ORIG [DEST]
+     *    or: ShortestPaths FILETYPE FILENAME --batch [QUERYFILE] [--json] [--threads N]
+     * The first form prints the shortest path from ORIG to DEST, or the
+     * lengths of the shortest paths from ORIG to all nodes. The second form
+     * loads the graph once and answers a stream of queries; see
+     * BatchQueryRunner. */
     public static void main(String[] args) {
         // read command line args
         String fileType = args[0];
         String fileName = args[1];
         String SidewalkOrigCode = args[2];
 
+        if (SidewalkOrigCode.equals("--batch")) {
+            try {
+                BatchQueryRunner.runBatch(parseGraph(fileType, fileName),
+                        Arrays.copyOfRange(args, 3, args.length));
+            } catch (FileNotFoundException e) {
+                System.out.println("Could not open file " + fileName);
+            }
+            return;
+        }
+
         String SidewalkDestCode = null;
         if (args.length == 4) {
             SidewalkDestCode = args[3];
@@ -0,0 +1,115 @@
+package graph;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Routing on a CompiledGraph whose edges have time-dependent travel times
+ * given by TravelTimeProfiles. There are two kinds of queries:
+ *  - compute(origin, departure) finds the fastest paths from origin when
+ *    leaving at one departure time. Because every profile has the FIFO
+ *    property, waiting never helps, and Dijkstra's algorithm on arrival times
+ *    is exact.
+ *  - profile(origin, dest) finds the travel time from origin to dest as a
+ *    function of the departure time, covering every departure time of the day
+ *    at once. Labels are TravelTimeFunctions, extended along edges with
+ *    TravelTimeFunction.link and merged with TravelTimeFunction.min. Nodes are
+ *    settled in order of their fastest possible travel time and may be settled
+ *    again when their function improves somewhere.
+ * Sample usage:
+ *   TimeDependentRouter router = new TimeDependentRouter(profiles);
+ *   ShortestPathTree tree = router.compute(a, 8 * 3600);
+ *   TravelTimeFunction f = router.profile(a, b);
+ *   double arrival = f.arrivalTime(8 * 3600); // the same as 8 * 3600 + tree.distance(b)
+ *   */
+public class TimeDependentRouter {
+
+    private final CompiledGraph graph;
+    private final TravelTimeProfiles profiles;
+
+    /** Constructor: create a router for the graph of profiles. */
+    public TimeDependentRouter(TravelTimeProfiles profiles) {
+        this.graph = profiles.getGraph();
+        this.profiles = profiles;
+    }
+
+    /** Compute the fastest paths from origin to all nodes when leaving origin
+     * at time departure. The distances in the result are travel times, so a
+     * node is reached at departure plus its distance.
+     * Precondition: origin is a node in the graph. */
+    public ShortestPathTree compute(Node origin, double departure) {
+        int s = graph.indexOf(origin);
+        DijkstraSearch search = new DijkstraSearch(graph.numNodes());
+        search.start(s);
+        for (int u = search.next(); u >= 0; u = search.next()) {
+            double travelTime = search.distance(u);
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                search.relax(u, graph.head(e),
+                        travelTime + profiles.travelTime(e, departure + travelTime));
+            }
+        }
+        return search.tree(graph.nodeArray(), graph.nodeIndex(), s);
+    }
+
+    /** Return the travel time from origin to dest as a function of the time
+     * of leaving origin, or null if dest is unreachable.
+     * Precondition: origin and dest are nodes in the graph. */
+    public TravelTimeFunction profile(Node origin, Node dest) {
+        int t = graph.indexOf(dest);
+        return profileSearch(graph.indexOf(origin), t)[t];
+    }
+
+    /** Return the travel time from origin to every reachable node as a
+     * function of the time of leaving origin, in node index order.
+     * Precondition: origin is a node in the graph. */
+    public Map<Node,TravelTimeFunction> profiles(Node origin) {
+        TravelTimeFunction[] label = profileSearch(graph.indexOf(origin), -1);
+        LinkedHashMap<Node,TravelTimeFunction> result = new LinkedHashMap<>();
+        for (int v = 0; v < label.length; v++) {
+            if (label[v] != null) {
+                result.put(graph.getNode(v), label[v]);
+            }
+        }
+        return result;
+    }
+
+    /* Return the travel time functions from s, which are exact for every node
+     * if t is -1 and otherwise at least for t. */
+    private TravelTimeFunction[] profileSearch(int s, int t) {
+        TravelTimeFunction[] label = new TravelTimeFunction[graph.numNodes()];
+        // nodes are keyed by the smallest travel time of their function
+        DijkstraSearch search = new DijkstraSearch(graph.numNodes());
+        label[s] = TravelTimeFunction.constant(0.0);
+        search.start(s);
+
+        // slowest travel time to t found so far; nodes that cannot be reached
+        // faster than this cannot improve t at any departure time
+        double bound = Double.POSITIVE_INFINITY;
+        for (int u = search.next(); u >= 0; u = search.next()) {
+            if (label[u].min() > bound) {
+                continue;
+            }
+            for (int e = graph.edgeStart(u); e < graph.edgeEnd(u); e++) {
+                int v = graph.head(e);
+                TravelTimeFunction candidate = profiles.hasProfile(e)
+                        ? label[u].link(profiles.function(e))
+                        : label[u].plus(graph.weight(e));
+                if (candidate.min() > bound) {
+                    continue;
+                }
+                if (label[v] == null) {
+                    label[v] = candidate;
+                } else if (candidate.isDominatedBy(label[v])) {
+                    continue;
+                } else {
+                    label[v] = label[v].min(candidate);
+                }
+                if (v == t) {
+                    bound = label[t].max();
+                }
+                // v must be settled again to pass on its improved function,
+                // even where its smallest travel time did not change
+                search.requeue(u, v, label[v].min());
+            }
+        }
+        return label;
+    }
+}
@@ -0,0 +1,283 @@
+package graph;
+import java.util.Arrays;
+
+/** A piecewise-linear function from departure time to travel time, given by
+ * its breakpoints: departing at times[i] takes travelTimes[i], with linear
+ * interpolation in between. Before the first breakpoint and after the last the
+ * travel time stays constant. Functions must satisfy the FIFO property, that
+ * departing later never means arriving earlier, i.e. no segment has slope
+ * below -1. TravelTimeFunctions are immutable.
+ * Sample usage:
+ *   // 10 minutes at night, 20 minutes at 8:00, in seconds since midnight
+ *   TravelTimeFunction f = new TravelTimeFunction(
+ *           new double[] {6 * 3600, 8 * 3600, 10 * 3600},
+ *           new double[] {600, 1200, 600});
+ *   double arrival = f.arrivalTime(7 * 3600);
+ *   */
+public class TravelTimeFunction {
+
+    // tolerance for treating two times or travel times as equal
+    private static final double EPSILON = 1e-9;
+
+    private final double[] times; // strictly increasing departure times
+    private final double[] travelTimes; // travel time at each departure time
+
+    /** Constructor: create the function with the given breakpoints. The
+     * arrays are copied. Precondition: there is at least one breakpoint, times
+     * are strictly increasing, travel times are nonnegative, and the FIFO
+     * property holds. */
+    public TravelTimeFunction(double[] times, double[] travelTimes) {
+        this(Arrays.copyOf(times, times.length),
+                Arrays.copyOf(travelTimes, travelTimes.length), true);
+        if (times.length == 0 || times.length != travelTimes.length) {
+            throw new IllegalArgumentException("Need matching, nonempty breakpoints");
+        }
+        for (int i = 0; i < times.length; i++) {
+            if (travelTimes[i] < 0) {
+                throw new IllegalArgumentException("Negative travel time at " + times[i]);
+            }
+            if (i > 0 && times[i] <= times[i - 1]) {
+                throw new IllegalArgumentException("Times must be strictly increasing");
+            }
+            if (i > 0 && times[i] + travelTimes[i] < times[i - 1] + travelTimes[i - 1]) {
+                throw new IllegalArgumentException(
+                        "Departing at " + times[i] + " arrives earlier than at " + times[i - 1]);
+            }
+        }
+    }
+
+    /* Constructor: wrap the arrays without copying or checking them. */
+    private TravelTimeFunction(double[] times, double[] travelTimes, boolean trusted) {
+        this.times = times;
+        this.travelTimes = travelTimes;
+    }
+
+    /** Return the function that takes travelTime at every departure time. */
+    public static TravelTimeFunction constant(double travelTime) {
+        return new TravelTimeFunction(new double[] {0.0}, new double[] {travelTime}, true);
+    }
+
+    /** Return the number of breakpoints. */
+    public int size() {
+        return times.length;
+    }
+
+    /** Return the departure time of breakpoint i. */
+    public double time(int i) {
+        return times[i];
+    }
+
+    /** Return the travel time of breakpoint i. */
+    public double travelTime(int i) {
+        return travelTimes[i];
+    }
+
+    /** Return whether the travel time is the same at all departure times. */
+    public boolean isConstant() {
+        return times.length == 1;
+    }
+
+    /** Return the travel time when departing at time t. */
+    public double evaluate(double t) {
+        return evaluate(times, travelTimes, 0, times.length, t);
+    }
+
+    /** Return the arrival time when departing at time t. */
+    public double arrivalTime(double t) {
+        return t + evaluate(t);
+    }
+
+    /** Return the smallest travel time over all departure times. */
+    public double min() {
+        double min = travelTimes[0];
+        for (double v : travelTimes) {
+            min = Math.min(min, v);
+        }
+        return min;
+    }
+
+    /** Return the largest travel time over all departure times. */
+    public double max() {
+        double max = travelTimes[0];
+        for (double v : travelTimes) {
+            max = Math.max(max, v);
+        }
+        return max;
+    }
+
+    /** Return the travel time function of following this function and then
+     * an edge that always takes c. Precondition: c >= 0. */
+    public TravelTimeFunction plus(double c) {
+        double[] shifted = new double[travelTimes.length];
+        for (int i = 0; i < shifted.length; i++) {
+            shifted[i] = travelTimes[i] + c;
+        }
+        return new TravelTimeFunction(times, shifted, true);
+    }
+
+    /** Return the travel time function of following this function and then
+     * next: departing at t takes f(t) + next(t + f(t)). */
+    public TravelTimeFunction link(TravelTimeFunction next) {
+        if (next.isConstant()) {
+            return plus(next.travelTimes[0]);
+        }
+
+        // the result bends where this function does, and where this
+        // function arrives at one of next's breakpoints
+        double[] candidates = new double[times.length + next.times.length];
+        int size = 0;
+        for (double t : times) {
+            candidates[size++] = t;
+        }
+        int n = times.length;
+        int k = 0;
+        for (double b : next.times) {
+            double t;
+            if (b <= times[0] + travelTimes[0]) {
+                t = b - travelTimes[0];
+            } else if (b >= times[n - 1] + travelTimes[n - 1]) {
+                t = b - travelTimes[n - 1];
+            } else {
+                // find the segment whose arrival times span b; arrival times
+                // increase with departure, so the search never moves back
+                while (times[k + 1] + travelTimes[k + 1] < b) {
+                    k++;
+                }
+                double a0 = times[k] + travelTimes[k];
+                double a1 = times[k + 1] + travelTimes[k + 1];
+                t = a1 - a0 < EPSILON ? times[k]
+                        : times[k] + (b - a0) / (a1 - a0) * (times[k + 1] - times[k]);
+            }
+            candidates[size++] = t;
+        }
+        Arrays.sort(candidates, 0, size);
+
+        double[] newTimes = new double[size];
+        double[] newValues = new double[size];
+        int m = 0;
+        for (int i = 0; i < size; i++) {
+            if (m > 0 && candidates[i] - newTimes[m - 1] < EPSILON) {
+                continue;
+            }
+            newTimes[m] = candidates[i];
+            double f = evaluate(candidates[i]);
+            newValues[m++] = f + next.evaluate(candidates[i] + f);
+        }
+        return simplify(newTimes, newValues, m);
+    }
+
+    /** Return the pointwise minimum of this function and other. */
+    public TravelTimeFunction min(TravelTimeFunction other) {
+        double[] candidates = new double[2 * (times.length + other.times.length)];
+        int size = 0;
+        for (double t : times) {
+            candidates[size++] = t;
+        }
+        for (double t : other.times) {
+            candidates[size++] = t;
+        }
+        Arrays.sort(candidates, 0, size);
+        // between consecutive breakpoints both are linear, so they cross at
+        // most once
+        int numBreaks = size;
+        for (int i = 0; i + 1 < numBreaks; i++) {
+            double t0 = candidates[i];
+            double t1 = candidates[i + 1];
+            double d0 = evaluate(t0) - other.evaluate(t0);
+            double d1 = evaluate(t1) - other.evaluate(t1);
+            if ((d0 < 0 && d1 > 0) || (d0 > 0 && d1 < 0)) {
+                candidates[size++] = t0 + d0 / (d0 - d1) * (t1 - t0);
+            }
+        }
+        Arrays.sort(candidates, 0, size);
+
+        double[] newTimes = new double[size];
+        double[] newValues = new double[size];
+        int m = 0;
+        for (int i = 0; i < size; i++) {
+            if (m > 0 && candidates[i] - newTimes[m - 1] < EPSILON) {
+                continue;
+            }
+            newTimes[m] = candidates[i];
+            newValues[m++] = Math.min(evaluate(candidates[i]), other.evaluate(candidates[i]));
+        }
+        return simplify(newTimes, newValues, m);
+    }
+
+    /** Return whether other is at least as fast as this function at every
+     * departure time, up to rounding. */
+    public boolean isDominatedBy(TravelTimeFunction other) {
+        // the difference is linear between the breakpoints of both functions,
+        // so checking at those suffices
+        for (int i = 0; i < times.length; i++) {
+            if (travelTimes[i] < other.evaluate(times[i]) - EPSILON) {
+                return false;
+            }
+        }
+        for (int i = 0; i < other.times.length; i++) {
+            if (evaluate(other.times[i]) < other.travelTimes[i] - EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Return the function with the first m given breakpoints, without those
+     * that lie on the line through their neighbors. The arrays are reused. */
+    private static TravelTimeFunction simplify(double[] times, double[] values, int m) {
+        int k = 0;
+        for (int i = 0; i < m; i++) {
+            while (k >= 2) {
+                double predicted = values[k - 2] + (values[i] - values[k - 2])
+                        * (times[k - 1] - times[k - 2]) / (times[i] - times[k - 2]);
+                if (Math.abs(predicted - values[k - 1]) >= EPSILON) {
+                    break;
+                }
+                k--;
+            }
+            times[k] = times[i];
+            values[k++] = values[i];
+        }
+        // constant segments at either end are covered by the constant
+        // extension beyond the outermost breakpoints
+        while (k >= 2 && Math.abs(values[k - 1] - values[k - 2]) < EPSILON) {
+            k--;
+        }
+        while (k >= 2 && Math.abs(values[0] - values[1]) < EPSILON) {
+            System.arraycopy(times, 1, times, 0, k - 1);
+            System.arraycopy(values, 1, values, 0, k - 1);
+            k--;
+        }
+        return new TravelTimeFunction(Arrays.copyOf(times, k), Arrays.copyOf(values, k), true);
+    }
+
+    /** Return the travel time at departure time t of the function whose
+     * breakpoints are times[from .. to-1] and travelTimes[from .. to-1]. Used
+     * to evaluate functions stored in shared arrays without copying them. */
+    static double evaluate(double[] times, double[] travelTimes, int from, int to, double t) {
+        if (t <= times[from]) {
+            return travelTimes[from];
+        }
+        if (t >= times[to - 1]) {
+            return travelTimes[to - 1];
+        }
+        int i = Arrays.binarySearch(times, from, to, t);
+        if (i >= 0) {
+            return travelTimes[i];
+        }
+        int hi = -i - 1; // times[hi - 1] < t < times[hi]
+        double fraction = (t - times[hi - 1]) / (times[hi] - times[hi - 1]);
+        return travelTimes[hi - 1] + fraction * (travelTimes[hi] - travelTimes[hi - 1]);
+    }
+
+    /** Return the breakpoints as "(time, travel time)" pairs. */
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < times.length; i++) {
+            output.append(i > 0 ? " " : "").append('(').append(times[i])
+                  .append(", ").append(travelTimes[i]).append(')');
+        }
+        return output.toString();
+    }
+}
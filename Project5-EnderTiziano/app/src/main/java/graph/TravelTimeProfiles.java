@@ -0,0 +1,169 @@
+package graph;
+import java.util.Arrays;
+
+/** Time-dependent travel times for the edges of a CompiledGraph. A profile is
+ * a TravelTimeFunction; many edges can share one profile (say, every sidewalk
+ * along a busy street), so profiles are added once and then assigned to edges.
+ * The breakpoints of all profiles are kept end to end in two shared arrays.
+ * Edges without a profile keep their static weight as a constant travel time.
+ * They cost one bit each: a bitset marks the edges that have a profile, and
+ * only for those is the profile number looked up, by binary search in a
+ * sorted array of profiled edges. While no edge has a profile the bitset is
+ * not even allocated.
+ * Sample usage:
+ *   TravelTimeProfiles profiles = new TravelTimeProfiles(cg);
+ *   int rushHour = profiles.addProfile(new TravelTimeFunction(
+ *           new double[] {7 * 3600, 8 * 3600, 9 * 3600},
+ *           new double[] {60, 180, 60}));
+ *   profiles.setProfile(a, b, rushHour);
+ *   double t = profiles.travelTime(cg.findEdge(ia, ib), 8 * 3600);
+ *   */
+public class TravelTimeProfiles {
+
+    private final CompiledGraph graph;
+
+    // breakpoints of profile p are at [profileStart[p], profileStart[p+1])
+    private double[] times = new double[16];
+    private double[] travelTimes = new double[16];
+    private int[] profileStart = {0};
+    private int numProfiles;
+
+    // bit e is set if edge e has a profile; null while no edge has one
+    private long[] hasProfile;
+    // edges with a profile in increasing order, and the profile of each
+    private int[] profiledEdges = new int[0];
+    private int[] edgeProfile = new int[0];
+    private int numProfiledEdges;
+
+    // each profile as a TravelTimeFunction, made when first needed
+    private TravelTimeFunction[] functions = new TravelTimeFunction[0];
+
+    /** Constructor: create an empty set of profiles for the edges of g. */
+    public TravelTimeProfiles(CompiledGraph g) {
+        this.graph = g;
+    }
+
+    /** Return the graph whose edges the profiles belong to. */
+    public CompiledGraph getGraph() {
+        return graph;
+    }
+
+    /** Add f as a profile and return its number. */
+    public int addProfile(TravelTimeFunction f) {
+        int size = f.size();
+        int start = profileStart[numProfiles];
+        if (start + size > times.length) {
+            int capacity = Math.max(2 * times.length, start + size);
+            times = Arrays.copyOf(times, capacity);
+            travelTimes = Arrays.copyOf(travelTimes, capacity);
+        }
+        for (int i = 0; i < size; i++) {
+            times[start + i] = f.time(i);
+            travelTimes[start + i] = f.travelTime(i);
+        }
+        if (numProfiles + 1 == profileStart.length) {
+            profileStart = Arrays.copyOf(profileStart, 2 * profileStart.length);
+            functions = Arrays.copyOf(functions, profileStart.length);
+        }
+        profileStart[numProfiles + 1] = start + size;
+        return numProfiles++;
+    }
+
+    /** Give edge e profile number profile, or remove its profile if profile
+     * is -1. Precondition: e is an edge of the graph and profile is -1 or a
+     * number returned by addProfile. */
+    public void setProfile(int e, int profile) {
+        if (profile < -1 || profile >= numProfiles) {
+            throw new IllegalArgumentException("No profile " + profile);
+        }
+        int i = Arrays.binarySearch(profiledEdges, 0, numProfiledEdges, e);
+        if (i >= 0) {
+            if (profile >= 0) {
+                edgeProfile[i] = profile;
+                return;
+            }
+            System.arraycopy(profiledEdges, i + 1, profiledEdges, i, numProfiledEdges - i - 1);
+            System.arraycopy(edgeProfile, i + 1, edgeProfile, i, numProfiledEdges - i - 1);
+            numProfiledEdges--;
+            hasProfile[e >>> 6] &= ~(1L << e);
+            return;
+        }
+        if (profile < 0) {
+            return;
+        }
+        if (hasProfile == null) {
+            hasProfile = new long[(graph.numEdges() + 63) >>> 6];
+        }
+        if (numProfiledEdges == profiledEdges.length) {
+            int capacity = Math.max(16, 2 * numProfiledEdges);
+            profiledEdges = Arrays.copyOf(profiledEdges, capacity);
+            edgeProfile = Arrays.copyOf(edgeProfile, capacity);
+        }
+        i = -i - 1;
+        System.arraycopy(profiledEdges, i, profiledEdges, i + 1, numProfiledEdges - i);
+        System.arraycopy(edgeProfile, i, edgeProfile, i + 1, numProfiledEdges - i);
+        profiledEdges[i] = e;
+        edgeProfile[i] = profile;
+        numProfiledEdges++;
+        hasProfile[e >>> 6] |= 1L << e;
+    }
+
+    /** Give the edge from u to v profile number profile, or remove its
+     * profile if profile is -1.
+     * Precondition: there is an edge from u to v in the graph. */
+    public void setProfile(Node u, Node v, int profile) {
+        int e = graph.findEdge(graph.indexOf(u), graph.indexOf(v));
+        if (e < 0) {
+            throw new IllegalArgumentException("No edge from " + u + " to " + v);
+        }
+        setProfile(e, profile);
+    }
+
+    /** Return the number of profiles added. */
+    public int numProfiles() {
+        return numProfiles;
+    }
+
+    /** Return the number of edges that have a profile. */
+    public int numProfiledEdges() {
+        return numProfiledEdges;
+    }
+
+    /** Return whether edge e has a profile. */
+    public boolean hasProfile(int e) {
+        return hasProfile != null && (hasProfile[e >>> 6] & (1L << e)) != 0;
+    }
+
+    /** Return the profile number of edge e, or -1 if it has none. */
+    public int profileOf(int e) {
+        if (!hasProfile(e)) {
+            return -1;
+        }
+        return edgeProfile[Arrays.binarySearch(profiledEdges, 0, numProfiledEdges, e)];
+    }
+
+    /** Return the time it takes to traverse edge e when entering it at time
+     * t: its profile evaluated at t, or its weight if it has no profile. */
+    public double travelTime(int e, double t) {
+        if (hasProfile == null || (hasProfile[e >>> 6] & (1L << e)) == 0) {
+            return graph.weight(e);
+        }
+        int p = edgeProfile[Arrays.binarySearch(profiledEdges, 0, numProfiledEdges, e)];
+        return TravelTimeFunction.evaluate(times, travelTimes, profileStart[p], profileStart[p + 1], t);
+    }
+
+    /** Return the travel time function of edge e, which is constant if it has
+     * no profile. */
+    public TravelTimeFunction function(int e) {
+        int p = profileOf(e);
+        if (p < 0) {
+            return TravelTimeFunction.constant(graph.weight(e));
+        }
+        if (functions[p] == null) {
+            functions[p] = new TravelTimeFunction(
+                    Arrays.copyOfRange(times, profileStart[p], profileStart[p + 1]),
+                    Arrays.copyOfRange(travelTimes, profileStart[p], profileStart[p + 1]));
+        }
+        return functions[p];
+    }
+}
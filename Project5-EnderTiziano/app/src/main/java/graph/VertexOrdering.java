@@ -0,0 +1,298 @@
+package graph;
+import java.util.Arrays;
+import java.util.Random;
+import java.io.FileNotFoundException;
+
+/** Node orderings that improve the memory locality of a CompiledGraph. Graph
+ * stores its nodes in HashMap order, so nodes that are close together on the
+ * map end up at unrelated indices and every edge a search scans is likely to
+ * miss the cache. Each method here returns an order array suitable for
+ * CompiledGraph.reorder, where order[i] is the current index of the node that
+ * should get index i.
+ * Sample usage:
+ *   CompiledGraph cg = new CompiledGraph(g);
+ *   cg = cg.reorder(VertexOrdering.cuthillMcKee(cg));
+ *   */
+public class VertexOrdering {
+
+    private static final int HILBERT_BITS = 16; // grid resolution per axis
+
+    /** Return the Cuthill-McKee order of g: a breadth-first search, ignoring
+     * edge directions, that starts each connected component at a node of
+     * minimum degree and visits neighbors in increasing order of degree. */
+    public static int[] cuthillMcKee(CompiledGraph g) {
+        int n = g.numNodes();
+        CompiledGraph rev = g.reverse();
+        int[] degree = new int[n];
+        for (int v = 0; v < n; v++) {
+            degree[v] = g.outDegree(v) + rev.outDegree(v);
+        }
+
+        // components are started in increasing order of degree
+        Integer[] starts = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            starts[v] = v;
+        }
+        Arrays.sort(starts, (a, b) -> Integer.compare(degree[a], degree[b]));
+
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int head = 0;
+        int tail = 0;
+        for (int start : starts) {
+            if (visited[start]) {
+                continue;
+            }
+            visited[start] = true;
+            order[tail++] = start;
+            while (head < tail) {
+                int u = order[head++];
+                int first = tail;
+                tail = enqueue(g, u, visited, order, tail);
+                tail = enqueue(rev, u, visited, order, tail);
+                // insertion sort the newly enqueued neighbors by degree
+                for (int i = first + 1; i < tail; i++) {
+                    int v = order[i];
+                    int j = i;
+                    while (j > first && degree[order[j - 1]] > degree[v]) {
+                        order[j] = order[j - 1];
+                        j--;
+                    }
+                    order[j] = v;
+                }
+            }
+        }
+        return order;
+    }
+
+    /* Append the unvisited heads of the edges leaving u to order, starting at
+     * position tail, and return the new tail. */
+    private static int enqueue(CompiledGraph g, int u, boolean[] visited,
+            int[] order, int tail) {
+        for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+            int v = g.head(e);
+            if (!visited[v]) {
+                visited[v] = true;
+                order[tail++] = v;
+            }
+        }
+        return tail;
+    }
+
+    /** Return the nodes of g in decreasing order of degree (in plus out), so
+     * the most frequently scanned nodes share cache lines. Ties keep their
+     * current relative order. */
+    public static int[] byDegree(CompiledGraph g) {
+        int n = g.numNodes();
+        CompiledGraph rev = g.reverse();
+        Integer[] nodes = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            nodes[v] = v;
+        }
+        Arrays.sort(nodes, (a, b) -> Integer.compare(
+                g.outDegree(b) + rev.outDegree(b), g.outDegree(a) + rev.outDegree(a)));
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = nodes[i];
+        }
+        return order;
+    }
+
+    /** Return the nodes of g in the order they are visited by a Hilbert
+     * space-filling curve through their coordinates, so that nodes close
+     * together on the map get nearby indices. Nodes whose coordinates are NaN
+     * are placed after all others. Precondition: x and y hold the coordinates
+     * of every node, indexed by node index. */
+    public static int[] hilbert(CompiledGraph g, double[] x, double[] y) {
+        int n = g.numNodes();
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < n; v++) {
+            if (!Double.isNaN(x[v]) && !Double.isNaN(y[v])) {
+                minX = Math.min(minX, x[v]);
+                maxX = Math.max(maxX, x[v]);
+                minY = Math.min(minY, y[v]);
+                maxY = Math.max(maxY, y[v]);
+            }
+        }
+        int side = 1 << HILBERT_BITS;
+        double scaleX = maxX > minX ? (side - 1) / (maxX - minX) : 0.0;
+        double scaleY = maxY > minY ? (side - 1) / (maxY - minY) : 0.0;
+
+        long[] keys = new long[n];
+        int numKeys = 0;
+        for (int v = 0; v < n; v++) {
+            if (!Double.isNaN(x[v]) && !Double.isNaN(y[v])) {
+                long d = hilbertIndex(side, (int) ((x[v] - minX) * scaleX),
+                        (int) ((y[v] - minY) * scaleY));
+                // the curve position goes in the high bits, the node in the low
+                keys[numKeys++] = (d << 31) | v;
+            }
+        }
+        Arrays.sort(keys, 0, numKeys);
+        int[] order = new int[n];
+        for (int i = 0; i < numKeys; i++) {
+            order[i] = (int) (keys[i] & Integer.MAX_VALUE);
+        }
+        int i = numKeys;
+        for (int v = 0; v < n; v++) {
+            if (Double.isNaN(x[v]) || Double.isNaN(y[v])) {
+                order[i++] = v;
+            }
+        }
+        return order;
+    }
+
+    /* Return the position of cell (x, y) along the Hilbert curve filling a
+     * side-by-side grid, where side is a power of two. */
+    private static long hilbertIndex(int side, int x, int y) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve stays continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /** Return the {longitude, latitude} arrays of the nodes of g, indexed by
+     * node index, decoded from their ids, or null if no id is a coordinate.
+     * Sidewalk CSV files identify nodes by their longitude immediately
+     * followed by their latitude, as in "-122.31013347.6164493"; the latitude
+     * is taken to be the last two digits before the final decimal point and
+     * everything after it. Nodes whose ids do not have this form get NaN
+     * coordinates. */
+    public static double[][] coordinatesFromIds(CompiledGraph g) {
+        int n = g.numNodes();
+        double[] lon = new double[n];
+        double[] lat = new double[n];
+        int numParsed = 0;
+        for (int v = 0; v < n; v++) {
+            String id = g.getNode(v).getId();
+            int split = id.lastIndexOf('.') - 2;
+            lon[v] = Double.NaN;
+            lat[v] = Double.NaN;
+            if (split < 1 || id.indexOf('.') >= split) {
+                continue;
+            }
+            try {
+                lon[v] = Double.parseDouble(id.substring(0, split));
+                lat[v] = Double.parseDouble(id.substring(split));
+                numParsed++;
+            } catch (NumberFormatException e) {
+                lon[v] = Double.NaN;
+                lat[v] = Double.NaN;
+            }
+        }
+        return numParsed == 0 ? null : new double[][] {lon, lat};
+    }
+
+    /** Return the average distance, in node indices, between the endpoints of
+     * the edges of g. The smaller it is, the more often a search finds the
+     * next node's data already in cache. */
+    public static double averageEdgeSpan(CompiledGraph g) {
+        long total = 0;
+        for (int u = 0; u < g.numNodes(); u++) {
+            for (int e = g.edgeStart(u); e < g.edgeEnd(u); e++) {
+                total += Math.abs(g.head(e) - u);
+            }
+        }
+        return g.numEdges() == 0 ? 0.0 : ((double) total) / g.numEdges();
+    }
+
+    /* Return the time in nanoseconds of one full shortest paths computation
+     * with sp from each of the given origin ids. */
+    private static long timeRound(ShortestPaths sp, String[] origins) {
+        long start = System.nanoTime();
+        for (String id : origins) {
+            sp.compute(new Node(id));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Benchmark: parse a graph, then time shortest paths queries from the
+     * same random origins under each node ordering and report the median
+     * query time over the rounds and the edge span. Every ordering is warmed
+     * up before any is timed, and the timed rounds take turns between the
+     * orderings, so none of them pays for the JIT compiling the search. Java
+     * cannot read hardware counters, so to see cache misses directly run this
+     * under a profiler such as perf stat -e cache-misses.
+     * Usage: VertexOrdering FILETYPE FILENAME [QUERIES] [ROUNDS] */
+    public static void main(String[] args) {
+        String fileType = args[0];
+        String fileName = args[1];
+        int numQueries = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Graph graph;
+        try {
+            graph = ShortestPaths.parseGraph(fileType, fileName);
+        } catch (FileNotFoundException e) {
+            System.out.println("Could not open file " + fileName);
+            return;
+        }
+        graph.report();
+        CompiledGraph original = new CompiledGraph(graph);
+        if (original.numNodes() == 0) {
+            return;
+        }
+
+        Random random = new Random(1);
+        String[] origins = new String[numQueries];
+        for (int i = 0; i < numQueries; i++) {
+            origins[i] = original.getNode(random.nextInt(original.numNodes())).getId();
+        }
+
+        String[] names = {"original", "degree", "cuthill-mckee", "hilbert"};
+        CompiledGraph[] graphs = new CompiledGraph[names.length];
+        graphs[0] = original;
+        graphs[1] = original.reorder(byDegree(original));
+        graphs[2] = original.reorder(cuthillMcKee(original));
+        double[][] coords = coordinatesFromIds(original);
+        if (coords != null) {
+            graphs[3] = original.reorder(hilbert(original, coords[0], coords[1]));
+        }
+
+        ShortestPaths[] searches = new ShortestPaths[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (graphs[i] != null) {
+                searches[i] = new ShortestPaths(graphs[i]);
+                for (int r = 0; r < rounds; r++) {
+                    timeRound(searches[i], origins);
+                }
+            }
+        }
+        // round r starts with ordering r, so each ordering runs at every
+        // position in turn
+        long[][] times = new long[names.length][rounds];
+        for (int r = 0; r < rounds; r++) {
+            for (int k = 0; k < names.length; k++) {
+                int i = (r + k) % names.length;
+                if (searches[i] != null) {
+                    times[i][r] = timeRound(searches[i], origins);
+                }
+            }
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (graphs[i] == null) {
+                System.out.println(names[i] + ": no coordinates, skipped");
+                continue;
+            }
+            Arrays.sort(times[i]);
+            double median = (times[i][(rounds - 1) / 2] + times[i][rounds / 2]) / 2.0;
+            System.out.printf("%s: %.1f us/query (median of %d rounds), average edge span %.1f%n",
+                    names[i], median / numQueries / 1000.0, rounds, averageEdgeSpan(graphs[i]));
+        }
+    }
+}
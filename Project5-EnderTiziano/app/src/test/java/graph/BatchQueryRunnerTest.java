@@ -0,0 +1,68 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class BatchQueryRunnerTest {
+
+    /* Returns the answers of a runner on the basic graph file fn. */
+    private String runQueries(String fn, String queries, int numThreads, boolean json)
+            throws IOException {
+        Graph g = loadGraph("basic", fn);
+        BatchQueryRunner runner = new BatchQueryRunner(new CompiledGraph(g), numThreads, json);
+        StringWriter out = new StringWriter();
+        runner.run(new BufferedReader(new StringReader(queries)), out);
+        return out.toString();
+    }
+
+    @Test
+    public void testCsvAnswers() throws IOException {
+        String out = runQueries("Simple1.txt", "A B\n\n# comment\nA Z\nB A\n", 2, false);
+        assertEquals("A,B,1.0,A B\nA,Z,error,unknown node Z\nB,A,13.0,B D S C A\n", out);
+    }
+
+    @Test
+    public void testJsonAnswers() throws IOException {
+        String out = runQueries("Simple0.txt", "A C\nB A\nA\n", 1, true);
+        assertEquals("{\"origin\":\"A\",\"dest\":\"C\",\"length\":2.0,\"path\":[\"A\",\"C\"]}\n"
+                + "{\"origin\":\"B\",\"dest\":\"A\",\"length\":null,\"path\":null}\n"
+                + "{\"origin\":\"A\",\"lengths\":{\"A\":0.0,\"B\":1.0,\"C\":2.0}}\n", out);
+    }
+
+    @Test
+    public void testOrderKeptUnderLoad() throws IOException {
+        StringBuilder queries = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            queries.append(i % 2 == 0 ? "S D\n" : "D S\n");
+            expected.append(i % 2 == 0 ? "S,D,7.0,S C D\n" : "D,S,1.0,D S\n");
+        }
+        assertEquals(expected.toString(), runQueries("Simple1.txt", queries.toString(), 8, false));
+    }
+
+    @Test
+    public void testBadThreadCounts() {
+        Graph g = loadGraph("basic", "Simple0.txt");
+        PrintStream err = System.err;
+        try {
+            for (String[] options : new String[][] {{"--threads"}, {"--threads", "x"},
+                    {"--threads", "0"}, {"q.txt", "--threads", "-2"}}) {
+                ByteArrayOutputStream message = new ByteArrayOutputStream();
+                System.setErr(new PrintStream(message));
+                BatchQueryRunner.runBatch(g, options);
+                assertTrue(message.toString().contains("Usage:"));
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+}
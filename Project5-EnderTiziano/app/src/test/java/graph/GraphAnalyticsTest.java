@@ -0,0 +1,176 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+public class GraphAnalyticsTest {
+
+    /* Returns a graph with an edge of weight 1 between each given pair. */
+    private Graph edges(String... pairs) {
+        Graph g = new Graph();
+        for (String pair : pairs) {
+            g.addEdge(g.getNode(pair.substring(0, 1)), g.getNode(pair.substring(1, 2)), 1.0);
+        }
+        return g;
+    }
+
+    /* Returns the weakly connected component sizes of g, largest first,
+     * found by breadth-first search ignoring edge directions. */
+    private List<Integer> componentSizes(Graph g) {
+        HashMap<Node,List<Node>> undirected = new HashMap<>();
+        for (Node u : g.getNodes().values()) {
+            undirected.computeIfAbsent(u, k -> new ArrayList<>());
+            for (Node v : u.getNeighbors().keySet()) {
+                undirected.get(u).add(v);
+                undirected.computeIfAbsent(v, k -> new ArrayList<>()).add(u);
+            }
+        }
+        HashSet<Node> seen = new HashSet<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (Node start : g.getNodes().values()) {
+            if (!seen.add(start)) {
+                continue;
+            }
+            int size = 0;
+            ArrayDeque<Node> frontier = new ArrayDeque<>();
+            frontier.add(start);
+            while (!frontier.isEmpty()) {
+                Node u = frontier.poll();
+                size++;
+                for (Node v : undirected.get(u)) {
+                    if (seen.add(v)) {
+                        frontier.add(v);
+                    }
+                }
+            }
+            sizes.add(size);
+        }
+        sizes.sort(Collections.reverseOrder());
+        return sizes;
+    }
+
+    @Test
+    public void testDegreesAndWeights() {
+        Graph g = loadGraph("basic", "Simple1.txt");
+        CompiledGraph cg = new CompiledGraph(g);
+        GraphAnalytics analytics = GraphAnalytics.analyze(cg, 0);
+        for (long[] histogram : new long[][] {analytics.getOutDegreeHistogram(),
+                                              analytics.getInDegreeHistogram()}) {
+            long nodes = 0;
+            long edges = 0;
+            for (int d = 0; d < histogram.length; d++) {
+                nodes += histogram[d];
+                edges += d * histogram[d];
+            }
+            assertEquals(cg.numNodes(), nodes);
+            assertEquals(cg.numEdges(), edges);
+        }
+        // B has one outgoing edge, S, A and D have two, C has three
+        assertArrayEquals(new long[] {0, 1, 3, 1}, analytics.getOutDegreeHistogram());
+
+        assertEquals(1.0, analytics.getMinWeight(), 0.0);
+        assertEquals(10.0, analytics.getMaxWeight(), 0.0);
+        long[] weights = analytics.getWeightHistogram();
+        long total = 0;
+        for (long count : weights) {
+            total += count;
+        }
+        assertEquals(cg.numEdges(), total);
+        assertEquals(1, weights[weights.length - 1]); // S A 10
+    }
+
+    @Test
+    public void testComponents() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        GraphAnalytics analytics = GraphAnalytics.analyze(new CompiledGraph(g), 0);
+        List<Integer> expected = componentSizes(g);
+        int[] sizes = analytics.getComponentSizes();
+        assertEquals(expected.size(), sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            assertEquals((int) expected.get(i), sizes[i]);
+        }
+
+        analytics = GraphAnalytics.analyze(new CompiledGraph(edges("AB", "CB", "DE")), 0);
+        assertArrayEquals(new int[] {3, 2}, analytics.getComponentSizes());
+    }
+
+    @Test
+    public void testDiameterBound() {
+        for (String fn : new String[] {"Simple0.txt", "Simple1.txt", "Simple2.txt"}) {
+            Graph g = loadGraph("basic", fn);
+            GraphAnalytics analytics = GraphAnalytics.analyze(new CompiledGraph(g), 0);
+            ShortestPaths sp = new ShortestPaths();
+            double diameter = 0.0;
+            for (Node origin : g.getNodes().values()) {
+                sp.compute(origin);
+                for (Node dest : g.getNodes().values()) {
+                    double d = sp.shortestPathLength(dest);
+                    if (d != Double.POSITIVE_INFINITY) {
+                        diameter = Math.max(diameter, d);
+                    }
+                }
+            }
+            double bound = analytics.getDiameterLowerBound();
+            assertTrue(bound <= diameter);
+            sp.compute(analytics.getDiameterFrom());
+            assertEquals(bound, sp.shortestPathLength(analytics.getDiameterTo()), 0.0);
+        }
+        // on a path one double sweep finds the diameter
+        GraphAnalytics analytics = GraphAnalytics.analyze(
+                new CompiledGraph(edges("AB", "BA", "BC", "CB", "CD", "DC")), 0);
+        assertEquals(3.0, analytics.getDiameterLowerBound(), 0.0);
+    }
+
+    @Test
+    public void testExactBetweenness() {
+        // a path: B lies on A-C and A-D, C on A-D and B-D
+        CompiledGraph path = new CompiledGraph(edges("AB", "BC", "CD"));
+        GraphAnalytics analytics = GraphAnalytics.analyze(path, path.numNodes());
+        assertEquals(0.0, analytics.betweenness(path.indexOf("A")), 0.0);
+        assertEquals(2.0, analytics.betweenness(path.indexOf("B")), 1e-12);
+        assertEquals(2.0, analytics.betweenness(path.indexOf("C")), 1e-12);
+        assertEquals(0.0, analytics.betweenness(path.indexOf("D")), 0.0);
+
+        // a diamond: the two shortest paths from A to D share the pair
+        CompiledGraph diamond = new CompiledGraph(edges("AB", "AC", "BD", "CD"));
+        analytics = GraphAnalytics.analyze(diamond, 100);
+        assertEquals(diamond.numNodes(), analytics.getNumSamples());
+        assertEquals(0.5, analytics.betweenness(diamond.indexOf("B")), 1e-12);
+        assertEquals(0.5, analytics.betweenness(diamond.indexOf("C")), 1e-12);
+        assertEquals(2, analytics.topBetweenness(10).length);
+    }
+
+    @Test
+    public void testSampledBetweennessAndJson() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        CompiledGraph cg = new CompiledGraph(g);
+        GraphAnalytics exact = GraphAnalytics.analyze(cg, cg.numNodes());
+        GraphAnalytics sampled = GraphAnalytics.analyze(cg, 50);
+        assertEquals(50, sampled.getNumSamples());
+        double exactTotal = 0.0;
+        double sampledTotal = 0.0;
+        for (int v = 0; v < cg.numNodes(); v++) {
+            assertTrue(sampled.betweenness(v) >= 0.0);
+            exactTotal += exact.betweenness(v);
+            sampledTotal += sampled.betweenness(v);
+        }
+        // the scaled estimate should be in the right range overall
+        assertTrue(sampledTotal > exactTotal / 3 && sampledTotal < exactTotal * 3);
+
+        String json = exact.toJson();
+        assertTrue(json.startsWith("{\"nodes\":" + cg.numNodes() + ",\"edges\":" + cg.numEdges()));
+        assertTrue(json.contains("\"components\":{\"count\":" + exact.getComponentSizes().length));
+        int top = exact.topBetweenness(1)[0];
+        assertTrue(json.contains("\"top\":[{\"node\":\"" + cg.getNode(top).getId() + "\""));
+        assertTrue(json.endsWith("}}"));
+    }
+}
@@ -0,0 +1,56 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.assertSameLengths;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class HubLabelsTest {
+
+    /* Asserts that labels give the lengths ShortestPaths computes for every
+     * pair of nodes of g, up to delta. */
+    private void assertSameLabelLengths(Graph g, HubLabels labels, double delta) {
+        assertSameLengths(g, origin -> dest -> labels.shortestPathLength(origin, dest), delta);
+    }
+
+    @Test
+    public void testSimpleGraphs() {
+        for (String fn : new String[] {"Simple0.txt", "Simple1.txt", "Simple2.txt"}) {
+            Graph g = loadGraph("basic", fn);
+            assertSameLabelLengths(g, HubLabels.build(new CompiledGraph(g)), 0.0);
+        }
+    }
+
+    @Test
+    public void testDBGraph() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        HubLabels labels = HubLabels.build(new CompiledGraph(g));
+        assertSameLabelLengths(g, labels, 1e-9);
+        // pruning keeps the labels far smaller than all pairs
+        assertTrue(labels.numLabelEntries() < 20L * g.getNodes().size());
+    }
+
+    @Test
+    public void testUnknownNode() {
+        Graph g = loadGraph("basic", "Simple0.txt");
+        HubLabels labels = HubLabels.build(new CompiledGraph(g));
+        assertEquals(Double.POSITIVE_INFINITY,
+                labels.shortestPathLength(g.getNode("A"), new Node("Z")), 0.0);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        HubLabels labels = HubLabels.build(new CompiledGraph(g));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        labels.write(bytes);
+        HubLabels read = HubLabels.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(labels.numLabelEntries(), read.numLabelEntries());
+        assertSameLabelLengths(g, read, 1e-9);
+    }
+}
@@ -0,0 +1,115 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.assertSameLengths;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+public class MultiCriteriaRouterTest {
+
+    private DBParser parser;
+    private Graph graph;
+    private CompiledGraph compiled;
+
+    /* Parses the CSV file fn and builds a router for it. */
+    private MultiCriteriaRouter loadRouter(String fn) {
+        parser = new DBParser();
+        try {
+            parser.open(new File(fn));
+        } catch (FileNotFoundException e) {
+            fail("Could not find graph " + fn);
+        }
+        graph = parser.parse();
+        compiled = new CompiledGraph(graph);
+        return new MultiCriteriaRouter(compiled, parser.getEdgeAttributes(compiled));
+    }
+
+    @Test
+    public void testAttributesLoaded() {
+        loadRouter("DBAttributes.csv");
+        EdgeAttributes attrs = parser.getEdgeAttributes(compiled);
+        int e = compiled.findEdge(compiled.indexOf("A"), compiled.indexOf("C"));
+        assertEquals(5.0, attrs.length(e), 0.0);
+        assertEquals(0.08, attrs.slope(e), 0.0);
+        assertEquals(1.0, attrs.accessibility(e), 0.0);
+        assertEquals("gravel", attrs.surfaceName(attrs.surface(e)));
+        e = compiled.findEdge(compiled.indexOf("D"), compiled.indexOf("E"));
+        assertEquals("asphalt", attrs.surfaceName(attrs.surface(e)));
+    }
+
+    @Test
+    public void testBadAndRepeatedRows() throws IOException {
+        File file = File.createTempFile("attributes", ".csv");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "origin,dest,distance,length,slope,surface\n"
+                + "A,B,1.0,n/a,0.02,gravel\n"
+                + "B,C,2.0,7,0.01,gravel\n"
+                + "B,C,3.0,8,,brick\n");
+        loadRouter(file.getPath());
+        EdgeAttributes attrs = parser.getEdgeAttributes(compiled);
+
+        // a non-numeric attribute gets its default without failing the parse
+        int e = compiled.findEdge(compiled.indexOf("A"), compiled.indexOf("B"));
+        assertEquals(0.0, attrs.length(e), 0.0);
+        assertEquals(0.02, attrs.slope(e), 0.0);
+
+        // like the weight, the attributes of a repeated edge come from its last row
+        e = compiled.findEdge(compiled.indexOf("B"), compiled.indexOf("C"));
+        assertEquals(3.0, compiled.weight(e), 0.0);
+        assertEquals(8.0, attrs.length(e), 0.0);
+        assertEquals(0.0, attrs.slope(e), 0.0);
+        assertEquals(3.0, attrs.accessibility(e), 0.0);
+        assertEquals("brick", attrs.surfaceName(attrs.surface(e)));
+    }
+
+    @Test
+    public void testAccessibilityMatchesShortestPaths() {
+        MultiCriteriaRouter router = loadRouter("DBCrop.csv");
+        assertSameLengths(graph,
+                origin -> router.compute(origin, CostProfile.accessibility())::distance, 1e-9);
+    }
+
+    @Test
+    public void testProfilesWithoutReparsing() {
+        MultiCriteriaRouter router = loadRouter("DBAttributes.csv");
+        Node a = graph.getNode("A");
+        Node d = graph.getNode("D");
+        assertEquals("[A, C, D]", router.compute(a, CostProfile.length()).path(d).toString());
+        assertEquals("[A, D]", router.compute(a, CostProfile.accessibility()).path(d).toString());
+
+        CostProfile avoidGravel = CostProfile.length();
+        avoidGravel.setSurfacePenalty("Gravel", 100.0);
+        ShortestPathTree tree = router.compute(a, avoidGravel);
+        assertEquals("[A, B, D]", tree.path(d).toString());
+        assertEquals(20.0, tree.distance(d), 1e-9);
+
+        CostProfile flat = new CostProfile(0.0, 1.0, 0.0);
+        assertEquals(0.0, router.compute(a, flat).distance(d), 1e-9);
+    }
+
+    @Test
+    public void testParetoFront() {
+        MultiCriteriaRouter router = loadRouter("DBAttributes.csv");
+        List<MultiCriteriaRouter.ParetoPath> front = router.paretoPaths(
+                graph.getNode("A"), graph.getNode("E"),
+                CostProfile.length(), CostProfile.accessibility());
+        assertEquals(3, front.size());
+        assertEquals("[A, C, D, E]", front.get(0).getPath().toString());
+        assertEquals(11.0, front.get(0).getFirstCost(), 1e-9);
+        assertEquals(2.1, front.get(0).getSecondCost(), 1e-9);
+        assertEquals("[A, B, D, E]", front.get(1).getPath().toString());
+        assertEquals("[A, D, E]", front.get(2).getPath().toString());
+        assertEquals(0.6, front.get(2).getSecondCost(), 1e-9);
+
+        assertTrue(router.paretoPaths(graph.getNode("E"), graph.getNode("A"),
+                CostProfile.length(), CostProfile.accessibility()).isEmpty());
+        assertEquals(1, router.paretoPaths(graph.getNode("A"), graph.getNode("A"),
+                CostProfile.length(), CostProfile.accessibility()).size());
+    }
+}
@@ -0,0 +1,125 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.assertSameLengths;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+
+public class OverlayGraphTest {
+
+    /* Asserts that the overlay agrees with ShortestPaths on every pair of
+     * nodes in g, and that every overlay path is a real path of that length. */
+    private void assertSameAnswers(Graph g, OverlayGraph overlay) {
+        assertSameLengths(g, origin -> dest -> {
+            double length = overlay.shortestPathLength(origin, dest);
+            assertPathLength(overlay.shortestPath(origin, dest), origin, dest, length);
+            return length;
+        }, 1e-9);
+    }
+
+    /* Asserts that path is a path from origin to dest with the given length,
+     * or null if the length is infinite. */
+    private void assertPathLength(LinkedList<Node> path, Node origin, Node dest, double expected) {
+        if (expected == Double.POSITIVE_INFINITY) {
+            assertNull(path);
+            return;
+        }
+        assertEquals(origin, path.getFirst());
+        assertEquals(dest, path.getLast());
+        double length = 0.0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            Double w = path.get(i).getNeighbors().get(path.get(i + 1));
+            assertNotNull("Path nodes should be connected", w);
+            length += w;
+        }
+        assertEquals(expected, length, 1e-9);
+    }
+
+    @Test
+    public void testPartitionRespectsCellSize() {
+        CompiledGraph cg = new CompiledGraph(loadGraph("db", "DBCrop.csv"));
+        Partition p = Partitioner.partition(cg, 16);
+        assertTrue(p.maxCellSize() <= 16);
+        int total = 0;
+        for (int c = 0; c < p.numCells(); c++) {
+            assertTrue(p.cellSize(c) > 0);
+            for (int i = 0; i < p.cellSize(c); i++) {
+                assertEquals(c, p.cellOf(p.cellNode(c, i)));
+            }
+            total += p.cellSize(c);
+        }
+        assertEquals(cg.numNodes(), total);
+        assertTrue(p.numBoundaryEdges() < cg.numEdges() / 2);
+    }
+
+    @Test
+    public void testSimpleGraphs() {
+        for (String fn : new String[] {"Simple0.txt", "Simple1.txt", "Simple2.txt"}) {
+            for (int cellSize = 1; cellSize <= 4; cellSize++) {
+                Graph g = loadGraph("basic", fn);
+                CompiledGraph cg = new CompiledGraph(g);
+                assertSameAnswers(g, new OverlayGraph(Partitioner.partition(cg, cellSize)));
+            }
+        }
+    }
+
+    @Test
+    public void testDBGraph() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        CompiledGraph cg = new CompiledGraph(g);
+        for (int cellSize : new int[] {4, 8}) {
+            OverlayGraph overlay = new OverlayGraph(Partitioner.partition(cg, cellSize));
+            // with cliques the overlay does more than search the whole graph
+            assertTrue(overlay.numCliqueArcs() > 0);
+            assertSameAnswers(g, overlay);
+        }
+    }
+
+    @Test
+    public void testWeightChange() {
+        Graph g = loadGraph("basic", "Simple2.txt");
+        CompiledGraph cg = new CompiledGraph(g);
+        Partition p = Partitioner.partition(cg, 3);
+        OverlayGraph overlay = new OverlayGraph(p);
+        assertEquals(0, overlay.customize());
+
+        // changing an edge inside a cell recomputes only that cell, and
+        // changing a boundary edge recomputes nothing
+        int[] inside = null; // tail and head of an edge inside a cell
+        int[] boundary = null; // tail and head of an edge between cells
+        for (int u = 0; u < cg.numNodes(); u++) {
+            for (int e = cg.edgeStart(u); e < cg.edgeEnd(u); e++) {
+                int v = cg.head(e);
+                if (p.cellOf(u) == p.cellOf(v)) {
+                    inside = new int[] {u, v};
+                } else {
+                    boundary = new int[] {u, v};
+                }
+            }
+        }
+        assertNotNull(inside);
+        assertNotNull(boundary);
+        for (int[] edge : new int[][] {inside, boundary}) {
+            Node u = cg.getNode(edge[0]);
+            Node v = cg.getNode(edge[1]);
+            double w = u.getNeighbors().get(v) + 1.0;
+            g.addEdge(u, v, w);
+            overlay.setWeight(u, v, w);
+            assertEquals(edge == inside ? 1 : 0, overlay.customize());
+        }
+        assertSameAnswers(g, overlay);
+
+        // make every edge out of D more expensive, in both representations
+        Node d = g.getNode("D");
+        for (Node v : d.getNeighbors().keySet()) {
+            double w = d.getNeighbors().get(v) + 10.0;
+            g.addEdge(d, v, w);
+            overlay.setWeight(d, v, w);
+        }
+        assertSameAnswers(g, overlay);
+        assertEquals(0, overlay.customize());
+    }
+}
@@ -0,0 +1,143 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+public class RoutingServerTest {
+
+    /* Returns a started server for the basic graph file fn. */
+    private RoutingServer startServer(String fn) throws IOException {
+        RoutingServer server = new RoutingServer(new CompiledGraph(loadGraph("basic", fn)));
+        server.start(0);
+        return server;
+    }
+
+    /* Returns the status code and body of a GET request, as "CODE BODY". */
+    private String get(RoutingServer server, String request)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + request)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() + " " + response.body();
+    }
+
+    @Test
+    public void testEndpoints() throws IOException, InterruptedException {
+        RoutingServer server = startServer("Simple1.txt");
+        try {
+            assertEquals("200 {\"origin\":\"A\",\"dest\":\"S\",\"length\":5.0,\"path\":[\"A\",\"C\",\"D\",\"S\"]}",
+                    get(server, "/route?from=A&to=S"));
+            assertEquals("200 {\"origin\":\"B\",\"dest\":\"A\",\"length\":13.0}",
+                    get(server, "/distance?from=B&to=A"));
+            assertEquals("200 {\"sources\":[\"A\",\"S\"],\"targets\":[\"B\",\"D\"],\"lengths\":[[1.0,4.0],[9.0,7.0]]}",
+                    get(server, "/matrix?from=A,S&to=B,D"));
+            assertEquals("200 {\"origin\":\"A\",\"limit\":3.0,\"nodes\":{\"A\":0.0,\"B\":1.0,\"C\":2.0}}",
+                    get(server, "/isochrone?from=A&limit=3"));
+            assertEquals("404 {\"error\":\"unknown node in Q\"}", get(server, "/distance?from=B&to=Q"));
+            assertEquals("400 {\"error\":\"missing parameter to\"}", get(server, "/route?from=A"));
+            // the endpoint is checked before its parameters
+            assertEquals("404 {\"error\":\"unknown endpoint /foo\"}", get(server, "/foo"));
+            assertEquals("404 {\"error\":\"unknown endpoint /foo\"}", get(server, "/foo?from=Q"));
+            assertTrue(get(server, "/stats").startsWith("200 {\"requests\":8,"));
+
+            for (String limit : new String[] {"Infinity", "-1", "NaN", "x"}) {
+                assertEquals("400 {\"error\":\"missing or invalid parameter limit\"}",
+                        get(server, "/isochrone?from=A&limit=" + limit));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testMalformedEscape() {
+        assertNull(RoutingServer.parseQuery("from=%zz&to=A"));
+        assertNull(RoutingServer.parseQuery("from=A%2"));
+        assertEquals("A B", RoutingServer.parseQuery("from=A+B&to=%41").get("from"));
+    }
+
+    @Test
+    public void testIsochroneSkipsUnreached() throws IOException, InterruptedException {
+        RoutingServer server = startServer("Simple0.txt");
+        try {
+            assertEquals("200 {\"origin\":\"B\",\"limit\":1.0E300,\"nodes\":{\"B\":0.0}}",
+                    get(server, "/isochrone?from=B&limit=1e300"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testCoalescingAndSharedSearches() throws Exception {
+        // searches wait at the gate until every request has arrived
+        CountDownLatch gate = new CountDownLatch(1);
+        RoutingServer server = new RoutingServer(new CompiledGraph(loadGraph("basic", "Simple1.txt"))) {
+            @Override
+            ShortestPathTree computeTree(int origin) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.computeTree(origin);
+            }
+        };
+        server.start(0);
+        try {
+            // four identical requests, and two more with the same origin
+            String[] requests = {"/route?from=A&to=S", "/route?from=A&to=S", "/route?from=A&to=S",
+                                 "/route?from=A&to=S", "/distance?from=A&to=B", "/isochrone?from=A&limit=3"};
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (String request : requests) {
+                responses.add(client.sendAsync(
+                        HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + request)).build(),
+                        HttpResponse.BodyHandlers.ofString()));
+            }
+
+            // three requests wait for the first, and the other two join its search
+            String counters = "\"coalesced\":3,\"searches\":1,\"sharedSearches\":2,";
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!get(server, "/stats").contains(counters)) {
+                assertTrue("requests did not overlap", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            gate.countDown();
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals("{\"origin\":\"A\",\"dest\":\"S\",\"length\":5.0,\"path\":[\"A\",\"C\",\"D\",\"S\"]}",
+                        responses.get(i).get().body());
+            }
+            assertEquals("{\"origin\":\"A\",\"dest\":\"B\",\"length\":1.0}", responses.get(4).get().body());
+            assertEquals("{\"origin\":\"A\",\"limit\":3.0,\"nodes\":{\"A\":0.0,\"B\":1.0,\"C\":2.0}}",
+                    responses.get(5).get().body());
+            assertTrue(get(server, "/stats").contains(counters));
+        } finally {
+            gate.countDown();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testUnreachable() throws IOException, InterruptedException {
+        RoutingServer server = startServer("Simple0.txt");
+        try {
+            assertEquals("200 {\"origin\":\"B\",\"dest\":\"A\",\"length\":null,\"path\":null}",
+                    get(server, "/route?from=B&to=A"));
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -13,6 +13,8 @@ import org.junit.runners.MethodSorters;
 
 import java.net.URL;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringWriter;
 
 import java.util.LinkedList;
 
@@ -351,4 +353,97 @@ public class ShortestPathsTest {
         }
 
     }
+
+    @Test
+    public void test13TreeArrays() {
+        Graph g = loadBasicGraph("Simple1.txt");
+        ShortestPaths sp = new ShortestPaths();
+        Node a = g.getNode("A");
+        sp.compute(a);
+        ShortestPathTree tree = sp.getTree();
+        assertEquals(a, tree.getOrigin());
+
+        // S is reached through A -> C -> D -> S
+        int s = tree.indexOf(g.getNode("S"));
+        assertEquals(5.0, tree.distance(s), 1e-6);
+        int[] path = tree.pathIndices(s);
+        assertEquals(4, path.length);
+        assertEquals(a, tree.getNode(path[0]));
+        assertEquals(g.getNode("D"), tree.getNode(tree.parent(s)));
+        assertEquals(-1, tree.parent(path[0]));
+        assertEquals(sp.shortestPath(g.getNode("S")), tree.path(g.getNode("S")));
+    }
+
+    @Test
+    public void test14TreeWrite() throws IOException {
+        Graph g = loadBasicGraph("Simple0.txt");
+        ShortestPaths sp = new ShortestPaths();
+        sp.compute(g.getNode("A"));
+        StringWriter out = new StringWriter();
+        sp.getTree().write(out);
+        assertEquals("A,,0.0\nB,A,1.0\nC,A,2.0\n", out.toString());
+    }
+
+    @Test
+    public void test15CompiledMatchesGraph() {
+        Graph g = loadBasicGraph("Simple2.txt");
+        ShortestPaths sp = new ShortestPaths();
+        ShortestPaths compiled = new ShortestPaths(new CompiledGraph(g));
+        for (Node origin : g.getNodes().values()) {
+            sp.compute(origin);
+            compiled.compute(origin);
+            for (Node dest : g.getNodes().values()) {
+                assertEquals(sp.shortestPathLength(dest),
+                        compiled.shortestPathLength(dest), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void test16LongPathToString() {
+        // building the string used to take time quadratic in the node count
+        Graph g = new Graph();
+        Node prev = g.getNode("0");
+        for (int i = 1; i < 100000; i++) {
+            Node next = g.getNode(Integer.toString(i));
+            g.addEdge(prev, next, 1.0);
+            prev = next;
+        }
+        ShortestPaths sp = new ShortestPaths();
+        sp.compute(g.getNode("0"));
+        assertTrue(sp.toString().endsWith(" || "));
+        assertEquals(100000, sp.shortestPath(prev).size());
+        assertEquals(99999.0, sp.shortestPathLength(prev), 1e-6);
+    }
+
+    @Test
+    public void test17TreeCoversOnlyKnownIndices() {
+        Graph g = loadBasicGraph("Simple0.txt");
+        Node a = g.getNode("A");
+        Node b = g.getNode("B");
+        Node c = g.getNode("C");
+        ShortestPaths sp = new ShortestPaths();
+        sp.compute(a);
+        ShortestPathTree tree = sp.getTree();
+        assertEquals(3, tree.numNodes());
+        for (int i = 0; i < tree.numNodes(); i++) {
+            assertNotNull(tree.getNode(i));
+            assertEquals(i, tree.indexOf(tree.getNode(i)));
+        }
+
+        // from B nothing else is reached, so no index of C is known
+        sp.compute(b);
+        tree = sp.getTree();
+        assertEquals(-1, tree.indexOf(c));
+        assertEquals(Double.POSITIVE_INFINITY, tree.distance(c), 0.0);
+        assertNull(tree.path(c));
+        for (int i = 0; i < tree.numNodes(); i++) {
+            if (i != tree.indexOf(b)) {
+                assertEquals(Double.POSITIVE_INFINITY, tree.distance(i), 0.0);
+                assertEquals(-1, tree.parent(i));
+                assertNull(tree.pathIndices(i));
+            }
+        }
+        assertEquals("Node: B Previous/Distance: null 0.0 || ", sp.toString());
+    }
 }
@@ -0,0 +1,41 @@
+package graph;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/* Graph loading and checking helpers shared by the test classes. */
+class TestGraphs {
+
+    /* Returns the Graph of type fileType loaded from the file with filename
+     * fn. */
+    static Graph loadGraph(String fileType, String fn) {
+        Graph result = null;
+        try {
+            result = ShortestPaths.parseGraph(fileType, fn);
+        } catch (FileNotFoundException e) {
+            fail("Could not find graph " + fn);
+        }
+        return result;
+    }
+
+    /* Asserts that for every pair of nodes of g, lengths.apply(origin) gives
+     * the length ShortestPaths computes from origin to the destination, up to
+     * delta. Overlay cliques, hub labels and the like add the same edge
+     * weights as ShortestPaths, but in a different order, so with fractional
+     * weights their sums can differ in the last bits; compare those with a
+     * small delta such as 1e-9 rather than 0.0. */
+    static void assertSameLengths(Graph g, Function<Node,ToDoubleFunction<Node>> lengths,
+            double delta) {
+        ShortestPaths sp = new ShortestPaths();
+        for (Node origin : g.getNodes().values()) {
+            sp.compute(origin);
+            ToDoubleFunction<Node> actual = lengths.apply(origin);
+            for (Node dest : g.getNodes().values()) {
+                assertEquals(sp.shortestPathLength(dest), actual.applyAsDouble(dest), delta);
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.assertSameLengths;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+public class TimeDependentRouterTest {
+
+    private static final double[] DEPARTURES = {-100.0, 0.0, 5000.0, 30000.0, 61234.5, 86400.0, 100000.0};
+
+    /* Returns profiles for g in which every third edge shares one of a few
+     * random day-long profiles. */
+    private TravelTimeProfiles randomProfiles(CompiledGraph g, long seed) {
+        Random random = new Random(seed);
+        TravelTimeProfiles profiles = new TravelTimeProfiles(g);
+        for (int p = 0; p < 5; p++) {
+            double[] times = new double[13];
+            double[] travelTimes = new double[13];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = i * 7200.0;
+                travelTimes[i] = 600.0 + 1200.0 * random.nextDouble();
+            }
+            profiles.addProfile(new TravelTimeFunction(times, travelTimes));
+        }
+        for (int e = 0; e < g.numEdges(); e += 3) {
+            profiles.setProfile(e, random.nextInt(profiles.numProfiles()));
+        }
+        return profiles;
+    }
+
+    @Test
+    public void testFunctionEvaluate() {
+        TravelTimeFunction f = new TravelTimeFunction(
+                new double[] {100.0, 200.0, 300.0}, new double[] {10.0, 50.0, 10.0});
+        assertEquals(10.0, f.evaluate(0.0), 0.0);
+        assertEquals(30.0, f.evaluate(150.0), 0.0);
+        assertEquals(50.0, f.evaluate(200.0), 0.0);
+        assertEquals(10.0, f.evaluate(1000.0), 0.0);
+        assertEquals(152.0, f.arrivalTime(130.0), 1e-12);
+        assertEquals(10.0, f.min(), 0.0);
+        assertEquals(50.0, f.max(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOvertakingRejected() {
+        // leaving at 10 arrives at 110, leaving at 20 arrives at 30
+        new TravelTimeFunction(new double[] {10.0, 20.0}, new double[] {100.0, 10.0});
+    }
+
+    @Test
+    public void testLinkAndMin() {
+        TravelTimeFunction f = new TravelTimeFunction(
+                new double[] {100.0, 200.0, 300.0}, new double[] {10.0, 50.0, 10.0});
+        TravelTimeFunction g = new TravelTimeFunction(
+                new double[] {150.0, 250.0}, new double[] {5.0, 25.0});
+        TravelTimeFunction linked = f.link(g);
+        TravelTimeFunction lower = f.min(g);
+        for (double t = -50.0; t <= 450.0; t += 0.5) {
+            assertEquals(f.evaluate(t) + g.evaluate(t + f.evaluate(t)), linked.evaluate(t), 1e-9);
+            assertEquals(Math.min(f.evaluate(t), g.evaluate(t)), lower.evaluate(t), 1e-9);
+        }
+        assertTrue(f.isDominatedBy(lower));
+        assertFalse(f.isDominatedBy(g));
+        assertEquals(1, TravelTimeFunction.constant(3.0).link(TravelTimeFunction.constant(4.0)).size());
+    }
+
+    @Test
+    public void testWithoutProfilesMatchesShortestPaths() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        CompiledGraph cg = new CompiledGraph(g);
+        TimeDependentRouter router = new TimeDependentRouter(new TravelTimeProfiles(cg));
+        assertSameLengths(g, origin -> router.compute(origin, 3600.0)::distance, 1e-9);
+        assertSameLengths(g, origin -> {
+            Map<Node,TravelTimeFunction> functions = router.profiles(origin);
+            return dest -> {
+                TravelTimeFunction f = functions.get(dest);
+                if (f == null) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                assertTrue(f.isConstant());
+                return f.evaluate(0.0);
+            };
+        }, 1e-9);
+    }
+
+    @Test
+    public void testProfileMatchesDepartureQueries() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        CompiledGraph cg = new CompiledGraph(g);
+        TimeDependentRouter router = new TimeDependentRouter(randomProfiles(cg, 33));
+        Random random = new Random(34);
+        for (int q = 0; q < 20; q++) {
+            Node origin = cg.getNode(random.nextInt(cg.numNodes()));
+            Map<Node,TravelTimeFunction> functions = router.profiles(origin);
+            for (double departure : DEPARTURES) {
+                ShortestPathTree tree = router.compute(origin, departure);
+                for (int v = 0; v < cg.numNodes(); v++) {
+                    Node dest = cg.getNode(v);
+                    TravelTimeFunction f = functions.get(dest);
+                    double expected = tree.distance(v);
+                    if (expected == Double.POSITIVE_INFINITY) {
+                        assertNull(f);
+                    } else {
+                        assertEquals(expected, f.evaluate(departure), 1e-6);
+                    }
+                }
+            }
+            Node dest = cg.getNode(random.nextInt(cg.numNodes()));
+            TravelTimeFunction f = router.profile(origin, dest);
+            for (double departure : DEPARTURES) {
+                double expected = router.compute(origin, departure).distance(dest);
+                assertEquals(expected, f == null ? Double.POSITIVE_INFINITY : f.evaluate(departure), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testPathFollowsProfile() {
+        Graph g = loadGraph("basic", "Simple1.txt");
+        CompiledGraph cg = new CompiledGraph(g);
+        ShortestPaths sp = new ShortestPaths();
+        Node a = g.getNode("A");
+        Node d = g.getNode("D");
+        sp.compute(a);
+        TravelTimeProfiles profiles = new TravelTimeProfiles(cg);
+        TimeDependentRouter router = new TimeDependentRouter(profiles);
+
+        // make the first edge of the static shortest path slow at midday
+        Node next = sp.shortestPath(d).get(1);
+        int jam = profiles.addProfile(new TravelTimeFunction(
+                new double[] {36000.0, 43200.0, 50400.0}, new double[] {1.0, 1000.0, 1.0}));
+        profiles.setProfile(a, next, jam);
+        int e = cg.findEdge(cg.indexOf(a), cg.indexOf(next));
+        assertEquals(jam, profiles.profileOf(e));
+        assertEquals(1, profiles.numProfiledEdges());
+
+        ShortestPathTree night = router.compute(a, 0.0);
+        ShortestPathTree noon = router.compute(a, 43200.0);
+        assertEquals(night.distance(d), router.profile(a, d).evaluate(0.0), 1e-9);
+        assertEquals(noon.distance(d), router.profile(a, d).evaluate(43200.0), 1e-9);
+        assertTrue(noon.distance(d) >= night.distance(d));
+
+        profiles.setProfile(e, -1);
+        assertFalse(profiles.hasProfile(e));
+        assertEquals(sp.shortestPathLength(d), router.compute(a, 43200.0).distance(d), 0.0);
+    }
+}
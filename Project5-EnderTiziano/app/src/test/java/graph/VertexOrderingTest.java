@@ -0,0 +1,114 @@
+package graph;
+
+import static org.junit.Assert.*;
+import static graph.TestGraphs.assertSameLengths;
+import static graph.TestGraphs.loadGraph;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+
+public class VertexOrderingTest {
+
+    /* Asserts that order is a permutation of 0 .. n-1. */
+    private void assertPermutation(int[] order, int n) {
+        assertEquals(n, order.length);
+        boolean[] seen = new boolean[n];
+        for (int v : order) {
+            assertFalse(seen[v]);
+            seen[v] = true;
+        }
+    }
+
+    /* Asserts that searching cg gives the same answers as searching g. */
+    private void assertSameAnswers(Graph g, CompiledGraph cg) {
+        ShortestPaths actual = new ShortestPaths(cg);
+        assertSameLengths(g, origin -> {
+            actual.compute(origin);
+            for (Node dest : g.getNodes().values()) {
+                LinkedList<Node> path = actual.shortestPath(dest);
+                if (path != null) {
+                    assertEquals(origin, path.getFirst());
+                    assertEquals(dest, path.getLast());
+                }
+            }
+            return actual::shortestPathLength;
+        }, 1e-9);
+    }
+
+    @Test
+    public void testOrderingsArePermutations() {
+        CompiledGraph cg = new CompiledGraph(loadGraph("db", "DBCrop.csv"));
+        assertPermutation(VertexOrdering.cuthillMcKee(cg), cg.numNodes());
+        assertPermutation(VertexOrdering.byDegree(cg), cg.numNodes());
+        double[][] coords = VertexOrdering.coordinatesFromIds(cg);
+        assertNotNull(coords);
+        assertPermutation(VertexOrdering.hilbert(cg, coords[0], coords[1]), cg.numNodes());
+        assertNull(VertexOrdering.coordinatesFromIds(
+                new CompiledGraph(loadGraph("basic", "Simple2.txt"))));
+    }
+
+    @Test
+    public void testHilbertPutsNaNLast() {
+        CompiledGraph cg = new CompiledGraph(loadGraph("basic", "Simple0.txt"));
+        double nan = Double.NaN;
+        assertArrayEquals(new int[] {1, 2, 0},
+                VertexOrdering.hilbert(cg, new double[] {nan, 1, 2}, new double[] {nan, 1, 2}));
+        assertArrayEquals(new int[] {0, 2, 1},
+                VertexOrdering.hilbert(cg, new double[] {1, 5, 2}, new double[] {1, nan, 2}));
+
+        // the sidewalk data has ids that are not coordinates
+        cg = new CompiledGraph(loadGraph("db", "DBCrop.csv"));
+        double[][] coords = VertexOrdering.coordinatesFromIds(cg);
+        int[] order = VertexOrdering.hilbert(cg, coords[0], coords[1]);
+        boolean seenNaN = false;
+        for (int v : order) {
+            boolean isNaN = Double.isNaN(coords[0][v]) || Double.isNaN(coords[1][v]);
+            assertFalse("node with coordinates after one without", seenNaN && !isNaN);
+            seenNaN |= isNaN;
+        }
+        assertTrue(seenNaN);
+    }
+
+    @Test
+    public void testReorderKeepsAnswers() {
+        Graph g = loadGraph("db", "DBCrop.csv");
+        CompiledGraph cg = new CompiledGraph(g);
+        CompiledGraph reordered = cg.reorder(VertexOrdering.cuthillMcKee(cg));
+        assertEquals(cg.numEdges(), reordered.numEdges());
+        assertTrue(VertexOrdering.averageEdgeSpan(reordered)
+                < VertexOrdering.averageEdgeSpan(cg));
+        for (int v = 0; v < reordered.numNodes(); v++) {
+            assertEquals(v, reordered.indexOf(reordered.getNode(v)));
+        }
+        assertSameAnswers(g, reordered);
+    }
+
+    @Test
+    public void testSerializationKeepsMapping() throws IOException {
+        Graph g = loadGraph("basic", "Simple2.txt");
+        CompiledGraph cg = new CompiledGraph(g);
+        cg = cg.reorder(VertexOrdering.byDegree(cg));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        cg.write(new DataOutputStream(bytes));
+        CompiledGraph read = CompiledGraph.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(cg.numNodes(), read.numNodes());
+        for (int v = 0; v < cg.numNodes(); v++) {
+            assertEquals(cg.getNode(v), read.getNode(v));
+            assertEquals(cg.edgeStart(v), read.edgeStart(v));
+        }
+        for (int e = 0; e < cg.numEdges(); e++) {
+            assertEquals(cg.head(e), read.head(e));
+            assertEquals(cg.weight(e), read.weight(e), 0.0);
+        }
+        assertSameAnswers(g, read);
+    }
+}